@@ -0,0 +1,15 @@
+/*
+ * Kinds of errors a formula cell can be in. Any error is displayed as #ERROR.
+ * A formula that reads a cell with an error gets the same error
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+package textExcel;
+
+public enum CellError {
+    NONE, // No error, formula has a value
+    CIRCULAR_REFERENCE, // Formula reads itself, directly or through other formulas
+    DIVIDE_BY_ZERO, // Formula divides by 0
+    INVALID_REFERENCE // Formula reads a cell without a numerical value, like an empty or text cell
+}
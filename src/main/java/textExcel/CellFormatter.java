@@ -0,0 +1,162 @@
+/*
+ * Formats numbers into the fixed width text cells are displayed with: the first 10 characters of
+ * Double.toString, padded with spaces. Digits are written straight into a char[] instead of going through
+ * Double.toString, a padded copy and a substring
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+package textExcel;
+
+public class CellFormatter {
+
+    // Width of a displayed cell
+    public static final int CELL_WIDTH = 10;
+
+    // Powers of ten that are exact as doubles
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+    // Most significant digits the fast path handles. Every decimal with this many digits rounds to a different double,
+    // so the shortest one that rounds to a value is the digits Double.toString prints
+    private static final int MAX_FAST_DIGITS = 15;
+
+    // Scratch buffer of each thread, so formatting a String only allocates the String
+    private static final ThreadLocal<char[]> BUFFERS = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[CELL_WIDTH];
+        }
+    };
+
+    // Returns (value + "          ").substring(0, 10) without the temporary Strings
+    public static String formatValue(double value) {
+        char[] buffer = BUFFERS.get();
+        writeValue(value, buffer, 0);
+        return new String(buffer, 0, CELL_WIDTH);
+    }
+
+    // Returns display text of a percent cell: its percent rounded toward zero, a percent sign and spaces, 10 long
+    public static String formatPercent(double percent) {
+        char[] buffer = BUFFERS.get();
+        writePercent(percent, buffer, 0);
+        return new String(buffer, 0, CELL_WIDTH);
+    }
+
+    // Writes the 10 characters (value + "          ").substring(0, 10) would have into out from offset
+    public static void writeValue(double value, char[] out, int offset) {
+        int length = writeShortDecimal(value, out, offset);
+        if (length < 0) {
+            // Exponents, infinity, NaN and values that need 16 or 17 digits are left to Double.toString
+            String text = Double.toString(value);
+            length = Math.min(text.length(), CELL_WIDTH);
+            text.getChars(0, length, out, offset);
+        }
+        pad(out, offset + length, offset + CELL_WIDTH);
+    }
+
+    // Writes the 10 characters of a percent cell's display text: the first 9 characters of the percent rounded
+    // toward zero, then a percent sign, then spaces
+    public static void writePercent(double percent, char[] out, int offset) {
+        long whole = (int) percent;
+        int length = writeDigits(whole, out, offset, CELL_WIDTH - 1);
+        out[offset + length] = '%';
+        pad(out, offset + length + 1, offset + CELL_WIDTH);
+    }
+
+    // Writes up to 10 characters of value in plain decimal notation exactly as Double.toString would.
+    // Returns number of characters written, or -1 if value isn't one the fast path handles
+    private static int writeShortDecimal(double value, char[] out, int offset) {
+        if (value == 0) {
+            // Negative zero keeps its sign
+            if (1 / value < 0) {
+                return copy("-0.0", out, offset);
+            }
+            return copy("0.0", out, offset);
+        }
+        double magnitude = Math.abs(value);
+        // Double.toString uses plain notation from 10^-3 up to 10^7, and isn't finite or plain outside that
+        if (!(magnitude >= 1e-3 && magnitude < 1e7)) {
+            return -1;
+        }
+        int integerDigits = magnitude < 1 ? 0 : digitCount((long) magnitude);
+        // Find the fewest fraction digits whose decimal rounds back to exactly this value
+        for (int fractionDigits = 0; integerDigits + fractionDigits <= MAX_FAST_DIGITS
+                && fractionDigits < POWERS_OF_TEN.length; fractionDigits++) {
+            double scale = POWERS_OF_TEN[fractionDigits];
+            long digits = Math.round(magnitude * scale);
+            // Both are exact doubles, so division rounds the decimal to its nearest double
+            if (digits / scale != magnitude) {
+                continue;
+            }
+            int position = offset;
+            int end = offset + CELL_WIDTH;
+            if (value < 0) {
+                out[position++] = '-';
+            }
+            long power = (long) scale;
+            position += writeDigits(digits / power, out, position, end - position);
+            if (position < end) {
+                out[position++] = '.';
+            }
+            if (fractionDigits == 0) {
+                // Whole numbers always show one fraction digit
+                if (position < end) {
+                    out[position++] = '0';
+                }
+                return position - offset;
+            }
+            // Fraction digits, with the leading zeros
+            long fraction = digits % power;
+            for (power /= 10; power > 0 && position < end; power /= 10) {
+                out[position++] = (char) ('0' + fraction / power % 10);
+            }
+            return position - offset;
+        }
+        return -1;
+    }
+
+    // Writes number in decimal, at most maxLength characters of it. Returns number of characters written
+    private static int writeDigits(long number, char[] out, int offset, int maxLength) {
+        int position = offset;
+        int end = offset + maxLength;
+        long remaining = number;
+        if (remaining < 0) {
+            if (position < end) {
+                out[position++] = '-';
+            }
+            remaining = -remaining;
+        }
+        long power = 1;
+        for (int i = 1; i < digitCount(remaining); i++) {
+            power *= 10;
+        }
+        for (; power > 0 && position < end; power /= 10) {
+            out[position++] = (char) ('0' + remaining / power % 10);
+        }
+        return position - offset;
+    }
+
+    // Number of decimal digits in a non-negative number
+    private static int digitCount(long number) {
+        int count = 1;
+        while (number >= 10) {
+            number /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    private static int copy(String text, char[] out, int offset) {
+        text.getChars(0, text.length(), out, offset);
+        return text.length();
+    }
+
+    // Fills out from start to end with spaces
+    private static void pad(char[] out, int start, int end) {
+        for (int i = start; i < end; i++) {
+            out[i] = ' ';
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Sorts cells by a key extracted from each cell once: a rank for the kind of cell, then its number or text.
+ * Ascending order is empty cells, then text, then numbers, then formulas with errors. Sorting is stable
+ * and O(n log n), and gives the order cells should be written back in instead of moving cells while sorting.
+ * Rows of a table are sorted the same way with one key column per sort column, later columns breaking ties
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+package textExcel;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+public class CellSorter {
+
+    // Ranks of cells, in ascending order
+    static final byte RANK_EMPTY = 0;
+    static final byte RANK_TEXT = 1;
+    static final byte RANK_NUMBER = 2;
+    static final byte RANK_ERROR = 3;
+
+    // Ranges with at least this many cells are sorted across cores. Shorter ones sort faster on one thread
+    public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    // Sort keys by key column, then by index of the cell in the column: its rank, and its number or text
+    // depending on the rank
+    private final byte[][] ranks;
+    private final double[][] numbers;
+    private final String[][] texts;
+    private final int length;
+
+    // Sorter of single cells, with each cell as its own key
+    public CellSorter(Cell[] cells) {
+        this(new Cell[][]{cells});
+    }
+
+    // Sorter of rows, given the cells of each key column in the order they are compared.
+    // Every column must have a cell for every row
+    public CellSorter(Cell[][] keyColumns) {
+        length = keyColumns[0].length;
+        ranks = new byte[keyColumns.length][];
+        numbers = new double[keyColumns.length][];
+        texts = new String[keyColumns.length][];
+        for (int key = 0; key < keyColumns.length; key++) {
+            ranks[key] = new byte[length];
+            numbers[key] = new double[length];
+            texts[key] = new String[length];
+            extractKeys(keyColumns[key], ranks[key], numbers[key], texts[key]);
+        }
+    }
+
+    // Extracts the sort key of every cell before anything is compared or moved, so keys are a snapshot of the sheet.
+    // Formulas give their memoized value, only calculated here if out of date, and never while comparing
+    private static void extractKeys(Cell[] cells, byte[] ranks, double[] numbers, String[] texts) {
+        for (int i = 0; i < cells.length; i++) {
+            Cell cell = cells[i];
+            if (cell instanceof TextCell) {
+                ranks[i] = RANK_TEXT;
+                texts[i] = ((TextCell) cell).getFullStringValue();
+            } else if (cell instanceof FormulaCell) {
+                FormulaCell formula = (FormulaCell) cell;
+                if (formula.getError() != CellError.NONE) {
+                    ranks[i] = RANK_ERROR;
+                } else {
+                    ranks[i] = RANK_NUMBER;
+                    numbers[i] = formula.getDoubleValue();
+                }
+            } else if (cell instanceof RealCell) {
+                ranks[i] = RANK_NUMBER;
+                numbers[i] = ((RealCell) cell).getDoubleValue();
+            } else {
+                ranks[i] = RANK_EMPTY;
+            }
+        }
+    }
+
+    // Returns sorted order of single cells, see sort(boolean[])
+    public int[] sort(boolean ascending) {
+        return sort(new boolean[]{ascending});
+    }
+
+    // Returns sorted order given the direction of each key column: element i is the index of the cell or row that goes
+    // in position i. Equal cells keep their order, so descending is the reverse order of the keys but not of equal cells
+    public int[] sort(boolean[] ascending) {
+        if (length >= PARALLEL_THRESHOLD) {
+            return sortInParallel(ascending);
+        }
+        int[] order = new int[length];
+        for (int i = 0; i < length; i++) {
+            order[i] = i;
+        }
+        // Bottom-up merge sort, merging runs back and forth between the 2 arrays
+        int[] merged = new int[length];
+        for (int width = 1; width < length; width *= 2) {
+            for (int start = 0; start < length; start += 2 * width) {
+                int middle = Math.min(start + width, length);
+                int end = Math.min(start + 2 * width, length);
+                merge(order, merged, start, middle, end, ascending);
+            }
+            int[] swap = order;
+            order = merged;
+            merged = swap;
+        }
+        return order;
+    }
+
+    // Sorts with Arrays.parallelSort, a parallel merge sort that is also stable, comparing the same keys
+    private int[] sortInParallel(final boolean[] ascending) {
+        Integer[] boxedOrder = new Integer[length];
+        for (int i = 0; i < boxedOrder.length; i++) {
+            boxedOrder[i] = i;
+        }
+        Arrays.parallelSort(boxedOrder, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return CellSorter.this.compare(a, b, ascending);
+            }
+        });
+        int[] order = new int[boxedOrder.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = boxedOrder[i];
+        }
+        return order;
+    }
+
+    // Merges sorted runs from[start, middle) and from[middle, end) into to[start, end).
+    // Ties take from the first run, which keeps the sort stable
+    private void merge(int[] from, int[] to, int start, int middle, int end, boolean[] ascending) {
+        // Runs already in order, as in a mostly sorted range, are just copied
+        if (middle == end || compare(from[middle - 1], from[middle], ascending) <= 0) {
+            System.arraycopy(from, start, to, start, end - start);
+            return;
+        }
+        int left = start;
+        int right = middle;
+        for (int i = start; i < end; i++) {
+            if (left < middle && (right >= end || compare(from[left], from[right], ascending) <= 0)) {
+                to[i] = from[left++];
+            } else {
+                to[i] = from[right++];
+            }
+        }
+    }
+
+    // Compares keys of cells a and b, one key column at a time in each column's direction
+    private int compare(int a, int b, boolean[] ascending) {
+        for (int key = 0; key < ascending.length; key++) {
+            int comparison = compareAscending(key, a, b);
+            if (comparison != 0) {
+                return ascending[key] ? comparison : -comparison;
+            }
+        }
+        return 0;
+    }
+
+    private int compareAscending(int key, int a, int b) {
+        return compareKeys(ranks[key][a], numbers[key][a], texts[key][a], ranks[key][b], numbers[key][b], texts[key][b]);
+    }
+
+    // Compares 2 extracted keys in ascending order. Also used to merge runs that were sorted separately
+    static int compareKeys(byte rankA, double numberA, String textA, byte rankB, double numberB, String textB) {
+        if (rankA != rankB) {
+            return rankA < rankB ? -1 : 1;
+        }
+        if (rankA == RANK_TEXT) {
+            return Integer.signum(textA.compareTo(textB));
+        }
+        if (rankA == RANK_NUMBER) {
+            return compareNumbers(numberA, numberB);
+        }
+        return 0;
+    }
+
+    // Returns rank of cell i in key column key
+    byte getRank(int key, int i) {
+        return ranks[key][i];
+    }
+
+    // Returns number of cell i in key column key, if it's ranked as a number
+    double getNumber(int key, int i) {
+        return numbers[key][i];
+    }
+
+    // Returns text of cell i in key column key, if it's ranked as text
+    String getText(int key, int i) {
+        return texts[key][i];
+    }
+
+    // Compares numbers like RealCell.compareTo, so 0.0 and -0.0 are equal, but puts NaN after every other number
+    // instead of making it equal to everything, which would not be a consistent order
+    private static int compareNumbers(double a, double b) {
+        if (a < b) {
+            return -1;
+        }
+        if (a > b) {
+            return 1;
+        }
+        boolean aIsNaN = Double.isNaN(a);
+        boolean bIsNaN = Double.isNaN(b);
+        if (aIsNaN == bIsNaN) {
+            return 0;
+        }
+        return aIsNaN ? 1 : -1;
+    }
+
+}
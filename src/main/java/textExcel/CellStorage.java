@@ -0,0 +1,83 @@
+/*
+ * Storage engine for the cells of a spreadsheet. Implementations decide how cells are laid out in memory,
+ * so large sheets don't have to keep an object for every cell
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+package textExcel;
+
+public interface CellStorage {
+
+    // Cell types returned by getType, so callers that only need a number don't have to build a cell
+    byte EMPTY = 0;
+    byte TEXT = 1;
+    byte VALUE = 2;
+    byte PERCENT = 3;
+    byte FORMULA = 4;
+    // Any other Cell implementation
+    byte OTHER = 5;
+
+    // Returns cell at given indexes. Cells never written return an EmptyCell.
+    // Throws IndexOutOfBoundsException if outside the storage
+    Cell get(int row, int col);
+
+    // Stores cell at given indexes. Throws IndexOutOfBoundsException if outside the storage
+    void set(int row, int col, Cell cell);
+
+    // Returns type of cell at given indexes. Can be overridden by storage that knows it without building the cell
+    default byte getType(int row, int col) {
+        return typeOf(get(row, col));
+    }
+
+    // Returns numerical value of a VALUE or PERCENT cell. Can be overridden by storage that keeps the number itself
+    default double getNumber(int row, int col) {
+        return ((RealCell) get(row, col)).getDoubleValue();
+    }
+
+    // Reorders rows startRow to endRow within columns startCol to endCol: row startRow + i gets what row
+    // startRow + order[i] held. Can be overridden by storage that moves its own arrays instead of cell objects
+    default void permuteRows(int startRow, int startCol, int endRow, int endCol, int[] order) {
+        Cell[] column = new Cell[order.length];
+        for (int col = startCol; col <= endCol; col++) {
+            for (int i = 0; i < order.length; i++) {
+                column[i] = get(startRow + order[i], col);
+            }
+            for (int i = 0; i < order.length; i++) {
+                if (order[i] != i) {
+                    set(startRow + i, col, column[i]);
+                }
+            }
+        }
+    }
+
+    // Returns number of rows
+    int getRows();
+
+    // Returns number of columns
+    int getCols();
+
+    // Empties every cell
+    void clear();
+
+    // Returns type of a cell object
+    static byte typeOf(Cell cell) {
+        if (cell == null || cell instanceof EmptyCell) {
+            return EMPTY;
+        }
+        if (cell instanceof TextCell) {
+            return TEXT;
+        }
+        if (cell instanceof FormulaCell) {
+            return FORMULA;
+        }
+        if (cell instanceof PercentCell) {
+            return PERCENT;
+        }
+        if (cell instanceof RealCell) {
+            return VALUE;
+        }
+        return OTHER;
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Sparse cell storage that splits the sheet into fixed size chunks of 64 x 64 cells.
+ * A chunk is only allocated when a cell in it is written, and every cell that was never written
+ * is the shared EmptyCell.EMPTY, so memory grows with the populated cells, not the size of the sheet
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+package textExcel;
+
+public class ChunkedCellStorage implements CellStorage {
+
+    // Chunks are CHUNK_SIZE x CHUNK_SIZE cells. Must be a power of 2
+    private static final int CHUNK_SHIFT = 6;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int rows;
+    private final int cols;
+    // chunks[chunk row][chunk col] holds cells row-major, null for empty cells.
+    // Both the chunk rows and the chunks are null until something is written in them
+    private Cell[][][] chunks;
+    // Number of non-empty cells in each chunk, so chunks that are emptied again can be freed
+    private int[][] chunkCounts;
+
+    public ChunkedCellStorage(int rows, int cols) {
+        if (rows < 1 || cols < 1) {
+            throw new IllegalArgumentException("Spreadsheet must have at least 1 row and 1 column");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        clear();
+    }
+
+    @Override
+    public Cell get(int row, int col) {
+        checkBounds(row, col);
+        Cell[][] chunkRow = chunks[row >> CHUNK_SHIFT];
+        if (chunkRow == null) {
+            return EmptyCell.EMPTY;
+        }
+        Cell[] chunk = chunkRow[col >> CHUNK_SHIFT];
+        if (chunk == null) {
+            return EmptyCell.EMPTY;
+        }
+        Cell cell = chunk[((row & CHUNK_MASK) << CHUNK_SHIFT) | (col & CHUNK_MASK)];
+        return cell == null ? EmptyCell.EMPTY : cell;
+    }
+
+    @Override
+    public void set(int row, int col, Cell cell) {
+        checkBounds(row, col);
+        int chunkRowIndex = row >> CHUNK_SHIFT;
+        int chunkColIndex = col >> CHUNK_SHIFT;
+        boolean empty = cell == null || cell instanceof EmptyCell;
+        Cell[][] chunkRow = chunks[chunkRowIndex];
+        if (chunkRow == null) {
+            if (empty) {
+                return;
+            }
+            chunkRow = new Cell[(cols + CHUNK_MASK) >> CHUNK_SHIFT][];
+            chunks[chunkRowIndex] = chunkRow;
+            chunkCounts[chunkRowIndex] = new int[chunkRow.length];
+        }
+        Cell[] chunk = chunkRow[chunkColIndex];
+        if (chunk == null) {
+            if (empty) {
+                return;
+            }
+            chunk = new Cell[CHUNK_SIZE * CHUNK_SIZE];
+            chunkRow[chunkColIndex] = chunk;
+        }
+        int index = ((row & CHUNK_MASK) << CHUNK_SHIFT) | (col & CHUNK_MASK);
+        int countChange = (empty ? 0 : 1) - (chunk[index] == null ? 0 : 1);
+        chunk[index] = empty ? null : cell;
+        chunkCounts[chunkRowIndex][chunkColIndex] += countChange;
+        // Free chunk once its last cell is emptied
+        if (chunkCounts[chunkRowIndex][chunkColIndex] == 0) {
+            chunkRow[chunkColIndex] = null;
+        }
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public void clear() {
+        chunks = new Cell[(rows + CHUNK_MASK) >> CHUNK_SHIFT][][];
+        chunkCounts = new int[chunks.length][];
+    }
+
+    // Throws IndexOutOfBoundsException if cell is outside the storage
+    private void checkBounds(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            throw new IndexOutOfBoundsException("Cell is outside of the spreadsheet");
+        }
+    }
+
+}
@@ -0,0 +1,278 @@
+/*
+ * Column oriented cell storage: each column keeps its numbers in a double[] and a type tag per cell in a byte[],
+ * so value and percent cells take 9 bytes instead of a cell object and its String, and summing a column
+ * reads one contiguous array. Text and formulas are kept in side tables. Cell objects for values, percents and text
+ * are only built, as views, when get asks for one. Recently built views are kept in a small cache, so reading the same
+ * cells again, like printing the grid, returns the same cells with their display text already formatted
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+package textExcel;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class ColumnarCellStorage implements CellStorage {
+
+    // Storage tags, kept in the type arrays. Value cells whose entered text is what Double.toString or
+    // Long.toString gives back for their value don't need the text kept, which covers almost all of them
+    private static final byte TAG_EMPTY = 0;
+    private static final byte TAG_DOUBLE_TEXT = 1;
+    private static final byte TAG_LONG_TEXT = 2;
+    private static final byte TAG_RAW_TEXT = 3;
+    private static final byte TAG_PERCENT = 4;
+    private static final byte TAG_TEXT = 5;
+    // Formulas and any other kind of cell are kept as objects, so the same formula cell is returned every time
+    private static final byte TAG_OBJECT = 6;
+
+    // Slots of the view cache, a power of 2. Enough for every cell of a few screens of the grid
+    private static final int VIEW_CACHE_SIZE = 1 << 12;
+
+    private final int rows;
+    private final int cols;
+    // Per column, null until something is written in the column.
+    // numbers hold a value cell's value and a percent cell's percent (50 for 50%)
+    private double[][] numbers;
+    private byte[][] tags;
+    // Packed key (see SpreadsheetLocation.pack) -> entered text of TAG_RAW_TEXT values and the text of TAG_TEXT cells
+    private HashMap<Long, String> texts;
+    // Packed key -> cell of TAG_OBJECT cells
+    private HashMap<Long, Cell> objects;
+    // Views built by get, each in the slot its key hashes to. A later view with the same slot replaces it
+    private View[] views;
+
+    public ColumnarCellStorage(int rows, int cols) {
+        if (rows < 1 || cols < 1) {
+            throw new IllegalArgumentException("Spreadsheet must have at least 1 row and 1 column");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        clear();
+    }
+
+    @Override
+    public Cell get(int row, int col) {
+        checkBounds(row, col);
+        byte[] columnTags = tags[col];
+        if (columnTags == null) {
+            return EmptyCell.EMPTY;
+        }
+        byte tag = columnTags[row];
+        if (tag == TAG_EMPTY) {
+            return EmptyCell.EMPTY;
+        }
+        long key = SpreadsheetLocation.pack(row, col);
+        if (tag == TAG_OBJECT) {
+            return objects.get(key);
+        }
+        int slot = viewSlot(key);
+        View view = views[slot];
+        if (view != null && view.key == key) {
+            return view.cell;
+        }
+        double number = numbers[col][row];
+        Cell cell;
+        switch (tag) {
+            case TAG_DOUBLE_TEXT:
+                cell = new ValueCell(Double.toString(number), number);
+                break;
+            case TAG_LONG_TEXT:
+                cell = new ValueCell(Long.toString((long) number), number);
+                break;
+            case TAG_RAW_TEXT:
+                cell = new ValueCell(texts.get(key), number);
+                break;
+            case TAG_PERCENT:
+                // Double.toString gives back the same percent when parsed, which is all a percent cell reads its text for
+                cell = new PercentCell(Double.toString(number) + "%", number / 100);
+                break;
+            default:
+                cell = new TextCell(texts.get(key));
+        }
+        views[slot] = new View(key, cell);
+        return cell;
+    }
+
+    @Override
+    public void set(int row, int col, Cell cell) {
+        checkBounds(row, col);
+        long key = SpreadsheetLocation.pack(row, col);
+        if (tags[col] == null) {
+            if (cell == null || cell instanceof EmptyCell) {
+                return;
+            }
+            numbers[col] = new double[rows];
+            tags[col] = new byte[rows];
+        }
+        // Drop whatever the side tables and view cache held for the old cell
+        int slot = viewSlot(key);
+        if (views[slot] != null && views[slot].key == key) {
+            views[slot] = null;
+        }
+        byte oldTag = tags[col][row];
+        if (oldTag == TAG_RAW_TEXT || oldTag == TAG_TEXT) {
+            texts.remove(key);
+        } else if (oldTag == TAG_OBJECT) {
+            objects.remove(key);
+        }
+
+        byte tag;
+        double number = 0.0;
+        // Only the exact classes are stored as primitives, so subclasses keep their behavior
+        if (cell == null || cell instanceof EmptyCell) {
+            tag = TAG_EMPTY;
+        } else if (cell.getClass() == ValueCell.class) {
+            number = ((ValueCell) cell).getDoubleValue();
+            String text = cell.fullCellText();
+            if (text.equals(Double.toString(number))) {
+                tag = TAG_DOUBLE_TEXT;
+            } else if (number == (long) number && text.equals(Long.toString((long) number))) {
+                tag = TAG_LONG_TEXT;
+            } else {
+                tag = TAG_RAW_TEXT;
+                texts.put(key, text);
+            }
+        } else if (cell.getClass() == PercentCell.class) {
+            tag = TAG_PERCENT;
+            number = ((PercentCell) cell).getPercentValue();
+        } else if (cell.getClass() == TextCell.class) {
+            tag = TAG_TEXT;
+            texts.put(key, ((TextCell) cell).getFullStringValue());
+        } else {
+            tag = TAG_OBJECT;
+            objects.put(key, cell);
+        }
+        tags[col][row] = tag;
+        numbers[col][row] = number;
+    }
+
+    @Override
+    public byte getType(int row, int col) {
+        checkBounds(row, col);
+        byte[] columnTags = tags[col];
+        if (columnTags == null) {
+            return EMPTY;
+        }
+        switch (columnTags[row]) {
+            case TAG_DOUBLE_TEXT:
+            case TAG_LONG_TEXT:
+            case TAG_RAW_TEXT:
+                return VALUE;
+            case TAG_PERCENT:
+                return PERCENT;
+            case TAG_TEXT:
+                return TEXT;
+            case TAG_OBJECT:
+                return CellStorage.typeOf(objects.get(SpreadsheetLocation.pack(row, col)));
+            default:
+                return EMPTY;
+        }
+    }
+
+    @Override
+    public double getNumber(int row, int col) {
+        checkBounds(row, col);
+        byte tag = tags[col] == null ? TAG_EMPTY : tags[col][row];
+        if (tag == TAG_PERCENT) {
+            return numbers[col][row] / 100;
+        }
+        if (tag == TAG_OBJECT) {
+            return ((RealCell) objects.get(SpreadsheetLocation.pack(row, col))).getDoubleValue();
+        }
+        return numbers[col][row];
+    }
+
+    // Moves the numbers and tags of each column as arrays. Only the side table entries of moved rows are re-keyed
+    @Override
+    public void permuteRows(int startRow, int startCol, int endRow, int endCol, int[] order) {
+        Arrays.fill(views, null);
+        double[] movedNumbers = new double[order.length];
+        byte[] movedTags = new byte[order.length];
+        Object[] movedEntries = new Object[order.length];
+        for (int col = startCol; col <= endCol; col++) {
+            checkBounds(startRow, col);
+            checkBounds(endRow, col);
+            byte[] columnTags = tags[col];
+            if (columnTags == null) {
+                // Nothing written in the column, so every row is empty
+                continue;
+            }
+            double[] columnNumbers = numbers[col];
+            for (int i = 0; i < order.length; i++) {
+                int from = startRow + order[i];
+                movedNumbers[i] = columnNumbers[from];
+                movedTags[i] = columnTags[from];
+                movedEntries[i] = null;
+                if (order[i] != i) {
+                    movedEntries[i] = removeEntry(SpreadsheetLocation.pack(from, col), movedTags[i]);
+                }
+            }
+            for (int i = 0; i < order.length; i++) {
+                int row = startRow + i;
+                columnNumbers[row] = movedNumbers[i];
+                columnTags[row] = movedTags[i];
+                if (movedEntries[i] instanceof String) {
+                    texts.put(SpreadsheetLocation.pack(row, col), (String) movedEntries[i]);
+                } else if (movedEntries[i] != null) {
+                    objects.put(SpreadsheetLocation.pack(row, col), (Cell) movedEntries[i]);
+                }
+            }
+        }
+    }
+
+    // Removes and returns side table entry of a cell with the given tag, or null if the tag has none
+    private Object removeEntry(long key, byte tag) {
+        if (tag == TAG_RAW_TEXT || tag == TAG_TEXT) {
+            return texts.remove(key);
+        }
+        if (tag == TAG_OBJECT) {
+            return objects.remove(key);
+        }
+        return null;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public void clear() {
+        numbers = new double[cols][];
+        tags = new byte[cols][];
+        texts = new HashMap<>();
+        objects = new HashMap<>();
+        views = new View[VIEW_CACHE_SIZE];
+    }
+
+    // Returns slot of the view cache for packed key
+    private static int viewSlot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (VIEW_CACHE_SIZE - 1);
+    }
+
+    // Throws IndexOutOfBoundsException if cell is outside the storage
+    private void checkBounds(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            throw new IndexOutOfBoundsException("Cell is outside of the spreadsheet");
+        }
+    }
+
+    // Cell built by get for a packed key. Fields are final and the entry is written to its slot at once,
+    // so threads reading cells during a parallel recalculation never see a key paired with another cell
+    private static class View {
+        private final long key;
+        private final Cell cell;
+
+        private View(long key, Cell cell) {
+            this.key = key;
+            this.cell = cell;
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Fixed capacity command history kept in a ring buffer: adding a command and evicting the oldest are O(1),
+ * and clearing the k oldest commands is O(k), instead of shifting every remembered command
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+package textExcel;
+
+import java.io.IOException;
+
+public class CommandHistory {
+
+    // Buffer length before it's first grown. The buffer grows up to the capacity as commands are added,
+    // so a large capacity doesn't allocate its whole buffer up front
+    private static final int INITIAL_LENGTH = 16;
+
+    private final int capacity;
+    private String[] commands;
+    // Index of the oldest command in commands, and number of commands held
+    private int oldest;
+    private int size;
+
+    public CommandHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("History must hold at least 1 command");
+        }
+        this.capacity = capacity;
+        commands = new String[Math.min(capacity, INITIAL_LENGTH)];
+    }
+
+    // Adds command as the newest, evicting the oldest command if the history is full
+    public void add(String command) {
+        if (size == commands.length && size < capacity) {
+            grow();
+        }
+        if (size == commands.length) {
+            commands[oldest] = command;
+            oldest = next(oldest);
+        } else {
+            commands[slot(size)] = command;
+            size++;
+        }
+    }
+
+    // Removes the count oldest commands, or every command if there are fewer
+    public void clearOldest(int count) {
+        int removed = Math.max(0, Math.min(count, size));
+        for (int i = 0; i < removed; i++) {
+            commands[oldest] = null;
+            oldest = next(oldest);
+        }
+        size -= removed;
+    }
+
+    // Returns number of commands held
+    public int size() {
+        return size;
+    }
+
+    // Returns max number of commands held
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Writes commands to out, newest first, each followed by a new line
+    public void write(Appendable out) throws IOException {
+        for (int age = 0; age < size; age++) {
+            out.append(commands[slot(size - 1 - age)]).append('\n');
+        }
+    }
+
+    // Doubles the buffer, up to the capacity, unwrapping the commands to start at index 0
+    private void grow() {
+        String[] grown = new String[(int) Math.min(capacity, 2L * commands.length)];
+        for (int i = 0; i < size; i++) {
+            grown[i] = commands[slot(i)];
+        }
+        commands = grown;
+        oldest = 0;
+    }
+
+    // Returns index in commands of the command offset places after the oldest
+    private int slot(int offset) {
+        return (int) ((oldest + (long) offset) % commands.length);
+    }
+
+    private int next(int index) {
+        return index + 1 == commands.length ? 0 : index + 1;
+    }
+
+}
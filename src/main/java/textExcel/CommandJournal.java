@@ -0,0 +1,255 @@
+/*
+ * Write-ahead journal of the commands that changed cells, so a spreadsheet survives a restart.
+ * Each command is appended as a binary record before its output is shown, and records are forced to disk
+ * in batches (group commit). Every so many commands a checkpoint writes a snapshot of the cells and truncates
+ * the journal, so recovery loads the latest snapshot and then replays only the commands after it
+ *
+ * Journal file: header (magic, version, rows, cols), then records of
+ * payload length (int), sequence number (long), type (byte), UTF-8 payload, CRC32 of sequence, type and payload (int).
+ * Snapshot file: a SpreadsheetSnapshot, with the sequence number of the last command it includes in its header.
+ * Snapshots are written to a temporary file and renamed, so they're never torn
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+package textExcel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+public class CommandJournal {
+
+    private static final int JOURNAL_MAGIC = 0x54584A4C; // "TXJL"
+    private static final short VERSION = 1;
+    private static final int JOURNAL_HEADER_SIZE = 4 + 2 + 4 + 4;
+    // Record bytes besides the payload: length, sequence, type and checksum
+    private static final int RECORD_OVERHEAD = 4 + 8 + 1 + 4;
+    // Longest payload accepted when reading, so a corrupt length can't allocate a huge buffer
+    private static final int MAX_PAYLOAD = 1 << 26;
+
+    // Record type of a command. Other values are left for later kinds of records
+    private static final byte TYPE_COMMAND = 1;
+
+    private final Path journalPath;
+    private final Path snapshotPath;
+    private final int syncBatch;
+    private final int checkpointInterval;
+    private FileChannel channel;
+    // Sequence number of the next command, commands written but not yet forced to disk,
+    // and commands since the last checkpoint
+    private long nextSequence;
+    private int unsyncedCommands;
+    private int commandsSinceCheckpoint;
+
+    // Journal at journalPath, with its snapshot next to it. Records are forced to disk every syncBatch commands,
+    // and a checkpoint is taken every checkpointInterval commands
+    public CommandJournal(Path journalPath, int syncBatch, int checkpointInterval) {
+        if (syncBatch < 1 || checkpointInterval < 1) {
+            throw new IllegalArgumentException("Journal sync batch and checkpoint interval must be at least 1");
+        }
+        this.journalPath = journalPath;
+        snapshotPath = journalPath.resolveSibling(journalPath.getFileName() + ".snapshot");
+        this.syncBatch = syncBatch;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    // Restores sheet from the latest snapshot and the journal, then opens the journal for appending.
+    // A torn record at the end of the journal, from a crash while it was written, is dropped.
+    // Throws IOException, leaving the journal as it was, at a record of a type this version doesn't know.
+    // Returns number of commands replayed from the journal
+    public int open(Spreadsheet sheet) throws IOException {
+        long snapshotSequence = 0;
+        if (Files.exists(snapshotPath)) {
+            snapshotSequence = SpreadsheetSnapshot.read(sheet, snapshotPath);
+        }
+        nextSequence = snapshotSequence + 1;
+        channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (channel.size() < JOURNAL_HEADER_SIZE) {
+            // New journal, or one torn while its header was written
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_SIZE);
+            putHeader(header, JOURNAL_MAGIC, sheet);
+            header.flip();
+            writeFully(channel, header, 0);
+            channel.force(true);
+            return 0;
+        }
+        ByteBuffer header = readFully(channel, 0, JOURNAL_HEADER_SIZE);
+        checkHeader(header, JOURNAL_MAGIC, sheet, journalPath);
+
+        int replayed = 0;
+        long position = JOURNAL_HEADER_SIZE;
+        Record record = new Record();
+        try {
+            while (readRecord(channel, position, record)) {
+                // Commands already in the snapshot are skipped, in case a crash came between the two
+                if (record.sequence >= nextSequence) {
+                    sheet.replayCommand(record.text);
+                    nextSequence = record.sequence + 1;
+                    commandsSinceCheckpoint++;
+                    replayed++;
+                }
+                position += RECORD_OVERHEAD + record.length;
+            }
+        } catch (IOException e) {
+            // Journal is left as it was, so no record is lost
+            channel.close();
+            throw e;
+        }
+        channel.truncate(position);
+        channel.position(position);
+        return replayed;
+    }
+
+    // Appends command. Forced to disk once syncBatch commands are waiting
+    public void append(String command) throws IOException {
+        byte[] payload = command.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_OVERHEAD + payload.length);
+        putRecord(buffer, nextSequence++, TYPE_COMMAND, payload);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        commandsSinceCheckpoint++;
+        if (++unsyncedCommands >= syncBatch) {
+            sync();
+        }
+    }
+
+    // Returns if enough commands have been appended since the last checkpoint to take another
+    public boolean needsCheckpoint() {
+        return commandsSinceCheckpoint >= checkpointInterval;
+    }
+
+    // Writes a snapshot of every non-empty cell of sheet, then truncates the journal to its header
+    public void checkpoint(Spreadsheet sheet) throws IOException {
+        sync();
+        // Replaces the last snapshot only once the new one is complete
+        SpreadsheetSnapshot.write(sheet, snapshotPath, false, nextSequence - 1);
+        channel.truncate(JOURNAL_HEADER_SIZE);
+        channel.position(JOURNAL_HEADER_SIZE);
+        channel.force(true);
+        commandsSinceCheckpoint = 0;
+    }
+
+    // Forces every appended command to disk
+    public void sync() throws IOException {
+        if (unsyncedCommands > 0) {
+            channel.force(false);
+            unsyncedCommands = 0;
+        }
+    }
+
+    // Forces every appended command to disk and closes the journal
+    public void close() throws IOException {
+        sync();
+        channel.close();
+    }
+
+    private static void putHeader(ByteBuffer buffer, int magic, Spreadsheet sheet) {
+        buffer.putInt(magic);
+        buffer.putShort(VERSION);
+        buffer.putInt(sheet.getRows());
+        buffer.putInt(sheet.getCols());
+    }
+
+    // Checks journal header was written by this version for a spreadsheet the size of sheet
+    private static void checkHeader(ByteBuffer header, int magic, Spreadsheet sheet, Path path) throws IOException {
+        if (header.getInt() != magic || header.getShort() != VERSION) {
+            throw new IOException(path + " is not a TextExcel journal of this version");
+        }
+        int rows = header.getInt();
+        int cols = header.getInt();
+        if (rows != sheet.getRows() || cols != sheet.getCols()) {
+            throw new IOException(path + " was written for a " + rows + " x " + cols + " spreadsheet");
+        }
+    }
+
+    private static void putRecord(ByteBuffer buffer, long sequence, byte type, byte[] payload) {
+        buffer.putInt(payload.length);
+        buffer.putLong(sequence);
+        buffer.put(type);
+        buffer.put(payload);
+        buffer.putInt(checksum(sequence, type, payload, payload.length));
+    }
+
+    // Reads record at position of file into record. Returns false at the end of the file or at a torn or corrupt record.
+    // Throws IOException at a whole record of a type this version doesn't know, written by a newer version
+    private static boolean readRecord(FileChannel file, long position, Record record) throws IOException {
+        long available = file.size() - position;
+        if (available < RECORD_OVERHEAD) {
+            return false;
+        }
+        ByteBuffer head = readFully(file, position, 4 + 8 + 1);
+        int length = head.getInt();
+        if (length < 0 || length > MAX_PAYLOAD || available < RECORD_OVERHEAD + length) {
+            return false;
+        }
+        long sequence = head.getLong();
+        byte type = head.get();
+        ByteBuffer rest = readFully(file, position + 4 + 8 + 1, length + 4);
+        byte[] payload = record.payload(length);
+        rest.get(payload, 0, length);
+        if (rest.getInt() != checksum(sequence, type, payload, length)) {
+            return false;
+        }
+        if (type != TYPE_COMMAND) {
+            throw new IOException("Journal record at byte " + position + " has unknown type " + type);
+        }
+        record.length = length;
+        record.sequence = sequence;
+        record.text = new String(payload, 0, length, StandardCharsets.UTF_8);
+        return true;
+    }
+
+    private static int checksum(long sequence, byte type, byte[] payload, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer head = ByteBuffer.allocate(8 + 1);
+        head.putLong(sequence);
+        head.put(type);
+        crc.update(head.array(), 0, head.position());
+        crc.update(payload, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static ByteBuffer readFully(FileChannel file, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (file.read(buffer, position + buffer.position()) == -1) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel file, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += file.write(buffer, position);
+        }
+        file.position(position);
+    }
+
+    // Record read from the journal. The payload buffer is reused between records
+    private static class Record {
+        private int length;
+        private long sequence;
+        private String text;
+        private byte[] payload = new byte[256];
+
+        private byte[] payload(int length) {
+            if (payload.length < length) {
+                payload = new byte[Math.max(length, 2 * payload.length)];
+            }
+            return payload;
+        }
+    }
+
+}
@@ -0,0 +1,318 @@
+/*
+ * Formula that has been tokenized and compiled once into a postfix program with resolved cell references
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+package textExcel;
+
+import java.util.ArrayList;
+
+public class CompiledFormula {
+
+    // Instruction codes of the postfix program
+    private static final byte PUSH_LITERAL = 0;
+    private static final byte PUSH_REFERENCE = 1;
+    private static final byte ADD = 2;
+    private static final byte SUBTRACT = 3;
+    private static final byte MULTIPLY = 4;
+    private static final byte DIVIDE = 5;
+    private static final byte SUM = 6;
+    private static final byte AVG = 7;
+
+    // Program and its operand slots. Slot arrays are indexed by instruction:
+    // literals hold the constant of PUSH_LITERAL, rows/cols hold the cell of PUSH_REFERENCE or the first corner of a range,
+    // endRows/endCols hold the second corner of a range
+    private final byte[] instructions;
+    private final double[] literals;
+    private final int[] rows;
+    private final int[] cols;
+    private final int[] endRows;
+    private final int[] endCols;
+    // Max number of values on the stack while running the program
+    private final int stackSize;
+
+    private CompiledFormula(int length, int stackSize) {
+        instructions = new byte[length];
+        literals = new double[length];
+        rows = new int[length];
+        cols = new int[length];
+        endRows = new int[length];
+        endCols = new int[length];
+        this.stackSize = stackSize;
+    }
+
+    // Compiles formula text like "( A1 + 2 * B3 )" or "( sum A1-C5 )". Throws IllegalArgumentException if invalid
+    public static CompiledFormula compile(String text) {
+        // Split by spaces, make all upper case and remove empty elements (caused by 2+ spaces in a row)
+        ArrayList<String> tokens = new ArrayList<>();
+        for (String part : text.toUpperCase().split(" ")) {
+            if (!part.equals("")) {
+                tokens.add(part);
+            }
+        }
+
+        // Check for and discard ( and ) elements at beginning and end
+        if (tokens.size() < 3 || !tokens.get(0).equals("(") || !tokens.get(tokens.size() - 1).equals(")")) {
+            throw new IllegalArgumentException("Must start and end with parenthesis");
+        }
+        tokens.remove(tokens.size() - 1);
+        tokens.remove(0);
+
+        // Check if sum or avg function
+        if (tokens.contains("SUM") || tokens.contains("AVG")) {
+            return compileFunction(tokens);
+        }
+
+        // Must alternate between number/cell and operator, starting and ending with number/cell
+        if (tokens.size() % 2 == 0) {
+            throw new IllegalArgumentException("Expression must alternate between numbers/cells and operators");
+        }
+
+        // Shunting-yard: operands go straight into the program, operators wait on a stack until
+        // every operator of higher or equal precedence before them has been emitted (left to right order of operations)
+        CompiledFormula compiled = new CompiledFormula(tokens.size(), (tokens.size() + 1) / 2);
+        int length = 0;
+        byte[] pendingOperators = new byte[tokens.size() / 2];
+        int pendingCount = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (i % 2 == 0) {
+                compiled.compileOperand(length++, tokens.get(i));
+            } else {
+                byte operator = parseOperator(tokens.get(i));
+                while (pendingCount > 0 && precedence(pendingOperators[pendingCount - 1]) >= precedence(operator)) {
+                    compiled.instructions[length++] = pendingOperators[--pendingCount];
+                }
+                pendingOperators[pendingCount++] = operator;
+            }
+        }
+        while (pendingCount > 0) {
+            compiled.instructions[length++] = pendingOperators[--pendingCount];
+        }
+        return compiled;
+    }
+
+    // Compiles a "SUM <range>" or "AVG <range>" function
+    private static CompiledFormula compileFunction(ArrayList<String> tokens) {
+        String function = tokens.get(0);
+        // Must only contain the function name and a range
+        if (tokens.size() != 2 || !(function.equals("SUM") || function.equals("AVG"))) {
+            throw new IllegalArgumentException("Sum and avg functions must only contain the word 'sum' or 'avg' and a range, like A1-C5");
+        }
+        String range = tokens.get(1);
+        int dash = range.indexOf('-');
+        long corner1 = dash == -1 ? SpreadsheetLocation.INVALID : SpreadsheetLocation.parse(range, 0, dash);
+        long corner2 = dash == -1 ? SpreadsheetLocation.INVALID : SpreadsheetLocation.parse(range, dash + 1, range.length());
+        if (corner1 == SpreadsheetLocation.INVALID || corner2 == SpreadsheetLocation.INVALID) {
+            throw new IllegalArgumentException("Invalid range. Must be a range of 2 cells separated by a - without spaces.");
+        }
+
+        CompiledFormula compiled = new CompiledFormula(1, 1);
+        compiled.instructions[0] = function.equals("SUM") ? SUM : AVG;
+        compiled.rows[0] = SpreadsheetLocation.unpackRow(corner1);
+        compiled.cols[0] = SpreadsheetLocation.unpackCol(corner1);
+        compiled.endRows[0] = SpreadsheetLocation.unpackRow(corner2);
+        compiled.endCols[0] = SpreadsheetLocation.unpackCol(corner2);
+        return compiled;
+    }
+
+    // Resolves operand into either a cell reference or a numeric literal
+    private void compileOperand(int index, String operand) {
+        long key = SpreadsheetLocation.parse(operand, 0, operand.length());
+        if (key != SpreadsheetLocation.INVALID) {
+            instructions[index] = PUSH_REFERENCE;
+            rows[index] = SpreadsheetLocation.unpackRow(key);
+            cols[index] = SpreadsheetLocation.unpackCol(key);
+        } else {
+            // Not a cell, so must be a number. Throws NumberFormatException (an IllegalArgumentException) if not
+            instructions[index] = PUSH_LITERAL;
+            literals[index] = Double.parseDouble(operand);
+        }
+    }
+
+    // Converts operator token into instruction
+    private static byte parseOperator(String operator) {
+        switch (operator) {
+            case "+":
+                return ADD;
+            case "-":
+                return SUBTRACT;
+            case "*":
+                return MULTIPLY;
+            case "/":
+                return DIVIDE;
+        }
+        throw new IllegalArgumentException("Expression must alternate between numbers/cells and operators");
+    }
+
+    // Multiplication and division are done before addition and subtraction
+    private static int precedence(byte operator) {
+        return operator == MULTIPLY || operator == DIVIDE ? 2 : 1;
+    }
+
+    // Throws IllegalArgumentException if any referenced cell is outside a spreadsheet of the given size
+    public void checkBounds(int rowCount, int colCount) {
+        for (int i = 0; i < instructions.length; i++) {
+            boolean isRange = instructions[i] == SUM || instructions[i] == AVG;
+            if (instructions[i] != PUSH_REFERENCE && !isRange) {
+                continue;
+            }
+            if (!inBounds(rows[i], cols[i], rowCount, colCount)
+                    || (isRange && !inBounds(endRows[i], endCols[i], rowCount, colCount))) {
+                throw new IllegalArgumentException("Referenced cell is outside of the spreadsheet");
+            }
+        }
+    }
+
+    private static boolean inBounds(int row, int col, int rowCount, int colCount) {
+        return row >= 0 && row < rowCount && col >= 0 && col < colCount;
+    }
+
+    // Returns packed keys (see SpreadsheetLocation.pack) of every single cell the formula reads
+    public long[] getPrecedents() {
+        int count = 0;
+        for (byte instruction : instructions) {
+            if (instruction == PUSH_REFERENCE) {
+                count++;
+            }
+        }
+        long[] precedents = new long[count];
+        count = 0;
+        for (int i = 0; i < instructions.length; i++) {
+            if (instructions[i] == PUSH_REFERENCE) {
+                precedents[count++] = SpreadsheetLocation.pack(rows[i], cols[i]);
+            }
+        }
+        return precedents;
+    }
+
+    // Returns ranges the formula reads, 4 ints per range: start row, start col, end row, end col
+    public int[] getRanges() {
+        for (int i = 0; i < instructions.length; i++) {
+            if (instructions[i] == SUM || instructions[i] == AVG) {
+                return new int[]{rows[i], cols[i], endRows[i], endCols[i]};
+            }
+        }
+        return new int[0];
+    }
+
+    // Returns size of the stack evaluate needs
+    public int getStackSize() {
+        return stackSize;
+    }
+
+    // Runs the program against sheet, leaving the result in stack[0]. stack must be at least getStackSize() long.
+    // Errors are returned, never thrown: NONE if the formula has a value, otherwise the first error found
+    public CellError evaluate(Spreadsheet sheet, double[] stack) {
+        int top = 0;
+        for (int i = 0; i < instructions.length; i++) {
+            switch (instructions[i]) {
+                case PUSH_LITERAL:
+                    stack[top++] = literals[i];
+                    break;
+                case PUSH_REFERENCE:
+                    CellError referenceError = readValue(sheet, rows[i], cols[i], stack, top);
+                    if (referenceError != CellError.NONE) {
+                        return referenceError;
+                    }
+                    top++;
+                    break;
+                case ADD:
+                    top--;
+                    stack[top - 1] = stack[top - 1] + stack[top];
+                    break;
+                case SUBTRACT:
+                    top--;
+                    stack[top - 1] = stack[top - 1] - stack[top];
+                    break;
+                case MULTIPLY:
+                    top--;
+                    stack[top - 1] = stack[top - 1] * stack[top];
+                    break;
+                case DIVIDE:
+                    top--;
+                    // Check for division by zero
+                    if (stack[top] == 0) {
+                        return CellError.DIVIDE_BY_ZERO;
+                    }
+                    stack[top - 1] = stack[top - 1] / stack[top];
+                    break;
+                case SUM:
+                case AVG:
+                    CellError rangeError = sumRange(sheet, i, stack, top);
+                    if (rangeError != CellError.NONE) {
+                        return rangeError;
+                    }
+                    if (instructions[i] == AVG) {
+                        // Count of cells in range does not distinguish between different cell types including empty
+                        stack[top] /= (endRows[i] - rows[i] + 1) * (endCols[i] - cols[i] + 1);
+                    }
+                    top++;
+                    break;
+                default:
+                    throw new AssertionError("An unknown error occurred");
+            }
+        }
+        return CellError.NONE;
+    }
+
+    // Sums range of instruction i into stack[top]
+    // Long ranges are summed with the spreadsheet's per-column index instead of visiting every cell
+    private CellError sumRange(Spreadsheet sheet, int i, double[] stack, int top) {
+        double sum = 0.0;
+        if (endRows[i] - rows[i] + 1 >= RangeSumIndex.MIN_INDEXED_ROWS) {
+            RangeSumIndex index = sheet.getRangeSumIndex();
+            // First cell without a value in row by row order: earliest row, then earliest column
+            int errorRow = -1;
+            int errorCol = -1;
+            for (int col = cols[i]; col <= endCols[i]; col++) {
+                int row = index.getFirstRowWithoutValue(col, rows[i], endRows[i]);
+                if (row != -1 && (errorRow == -1 || row < errorRow)) {
+                    errorRow = row;
+                    errorCol = col;
+                }
+            }
+            if (errorRow != -1) {
+                return readValue(sheet, errorRow, errorCol, stack, top);
+            }
+            for (int col = cols[i]; col <= endCols[i]; col++) {
+                sum += index.getColumnSum(col, rows[i], endRows[i]);
+            }
+            stack[top] = sum;
+            return CellError.NONE;
+        }
+        for (int row = rows[i]; row <= endRows[i]; row++) {
+            for (int col = cols[i]; col <= endCols[i]; col++) {
+                CellError error = readValue(sheet, row, col, stack, top);
+                if (error != CellError.NONE) {
+                    return error;
+                }
+                sum += stack[top];
+            }
+        }
+        stack[top] = sum;
+        return CellError.NONE;
+    }
+
+    // Reads numerical value of cell at row, col into stack[top]. Returns NONE if it has one, otherwise the error
+    // reading it gives. Values and percents are read as numbers straight from storage, without building a cell
+    private static CellError readValue(Spreadsheet sheet, int row, int col, double[] stack, int top) {
+        switch (sheet.getCellType(row, col)) {
+            case CellStorage.VALUE:
+            case CellStorage.PERCENT:
+                stack[top] = sheet.getNumber(row, col);
+                return CellError.NONE;
+            case CellStorage.FORMULA:
+                // Formula cells have a memoized value and error
+                FormulaCell formula = (FormulaCell) sheet.getCell(row, col);
+                CellError error = formula.getError();
+                if (error == CellError.NONE) {
+                    stack[top] = formula.getDoubleValue();
+                }
+                return error;
+            default:
+                return CellError.INVALID_REFERENCE;
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Writes the values of a range of cells to a CSV file, streamed row by row through a buffered file channel
+ * so large ranges are never built as one String
+ *
+ * Values and percents are written as entered, formulas as their calculated value or #ERROR, and text always quoted,
+ * with quotes written twice, so importing the file gives back the same kinds of cells. Empty cells are empty fields
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+package textExcel;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class CsvExporter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private CsvExporter() {
+    }
+
+    // Writes cells of sheet from startRow, startCol to endRow, endCol to path, one line per row
+    public static void write(Spreadsheet sheet, Path path, int startRow, int startCol, int endRow, int endCol)
+            throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+             Writer out = new BufferedWriter(Channels.newWriter(file, StandardCharsets.UTF_8.newEncoder(), -1),
+                     BUFFER_SIZE)) {
+            // Reused to put together one row at a time
+            StringBuilder line = new StringBuilder();
+            for (int row = startRow; row <= endRow; row++) {
+                line.setLength(0);
+                for (int col = startCol; col <= endCol; col++) {
+                    if (col > startCol) {
+                        line.append(',');
+                    }
+                    appendField(line, sheet, row, col);
+                }
+                line.append('\n');
+                out.append(line);
+            }
+        }
+    }
+
+    // Appends CSV field of cell at row, col
+    private static void appendField(StringBuilder line, Spreadsheet sheet, int row, int col) {
+        switch (sheet.getCellType(row, col)) {
+            case CellStorage.EMPTY:
+                return;
+            case CellStorage.VALUE:
+                line.append(sheet.getCell(row, col).fullCellText());
+                return;
+            case CellStorage.PERCENT:
+                // Percent cells show their decimal value as full text, so write the percent itself
+                line.append(((PercentCell) sheet.getCell(row, col)).getPercentValue()).append('%');
+                return;
+            case CellStorage.FORMULA:
+                line.append(((FormulaCell) sheet.getCell(row, col)).getFullStringValue());
+                return;
+            case CellStorage.TEXT:
+                appendQuoted(line, ((TextCell) sheet.getCell(row, col)).getFullStringValue());
+                return;
+            default:
+                appendQuoted(line, sheet.getCell(row, col).fullCellText());
+        }
+    }
+
+    private static void appendQuoted(StringBuilder line, String text) {
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+}
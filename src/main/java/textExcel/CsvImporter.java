@@ -0,0 +1,202 @@
+/*
+ * Reads a CSV file into cells. The file is memory-mapped and split into chunks at line breaks outside quotes,
+ * and the chunks are parsed into typed cells at the same time, so importing millions of cells
+ * isn't one assignment command per cell
+ *
+ * Fields are separated by commas and lines by \n or \r\n. Quoted fields can hold commas, line breaks and quotes
+ * written twice (""), and are always text. Other fields are trimmed and become a percent if they end in %,
+ * a value if they're a number like an assignment would take, and text otherwise. Empty fields are empty cells
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+package textExcel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class CsvImporter {
+
+    // Bytes per chunk. Smaller files are one chunk, parsed on the calling thread
+    public static final int CHUNK_SIZE = 1 << 20;
+
+    private CsvImporter() {
+    }
+
+    // Returns cells of every line of the CSV file at path, one array per line with null for empty fields.
+    // Chunks are parsed on pool's threads
+    public static ArrayList<Cell[]> read(Path path, ForkJoinPool pool) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = file.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to map");
+            }
+            MappedByteBuffer mapped = file.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int[] bounds = findChunks(mapped, (int) size);
+            int chunkCount = bounds.length - 1;
+            // Filled in by chunk, in any order, so every slot is there from the start
+            ArrayList<ArrayList<Cell[]>> chunks = new ArrayList<>(chunkCount);
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                chunks.add(null);
+            }
+            ParseTask task = new ParseTask(mapped, bounds, chunks, 0, chunkCount);
+            if (chunkCount > 1) {
+                pool.invoke(task);
+            } else {
+                task.invoke();
+            }
+
+            int lineCount = 0;
+            for (ArrayList<Cell[]> chunk : chunks) {
+                lineCount += chunk.size();
+            }
+            ArrayList<Cell[]> lines = new ArrayList<>(lineCount);
+            for (ArrayList<Cell[]> chunk : chunks) {
+                lines.addAll(chunk);
+            }
+            return lines;
+        }
+    }
+
+    // Returns start of every chunk and then the end of the file. Chunks end right after a line break
+    // outside quotes, so none of them splits a line. Quotes are only counted here: they toggle whether a line break
+    // ends a line, and a quote written twice toggles back
+    private static int[] findChunks(MappedByteBuffer mapped, int size) {
+        ArrayList<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        boolean quoted = false;
+        int nextBoundary = CHUNK_SIZE;
+        for (int i = 0; i < size; i++) {
+            byte b = mapped.get(i);
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == '\n' && !quoted && i + 1 >= nextBoundary && i + 1 < size) {
+                starts.add(i + 1);
+                nextBoundary = i + 1 + CHUNK_SIZE;
+            }
+        }
+        int[] bounds = new int[starts.size() + 1];
+        for (int i = 0; i < starts.size(); i++) {
+            bounds[i] = starts.get(i);
+        }
+        bounds[starts.size()] = size;
+        return bounds;
+    }
+
+    // Parses the lines of data from 0 to length
+    private static ArrayList<Cell[]> parseChunk(byte[] data, int length) {
+        ArrayList<Cell[]> lines = new ArrayList<>();
+        ArrayList<Cell> fields = new ArrayList<>();
+        int i = 0;
+        while (i < length) {
+            Cell cell;
+            if (data[i] == '"') {
+                // Quoted field: up to the quote that isn't written twice, then anything before the separator is ignored
+                int start = i + 1;
+                boolean escaped = false;
+                i = start;
+                while (i < length && (data[i] != '"' || (i + 1 < length && data[i + 1] == '"'))) {
+                    if (data[i] == '"') {
+                        escaped = true;
+                        i++;
+                    }
+                    i++;
+                }
+                String text = new String(data, start, Math.min(i, length) - start, StandardCharsets.UTF_8);
+                cell = new TextCell(escaped ? text.replace("\"\"", "\"") : text);
+                while (i < length && data[i] != ',' && data[i] != '\n') {
+                    i++;
+                }
+            } else {
+                int start = i;
+                while (i < length && data[i] != ',' && data[i] != '\n') {
+                    i++;
+                }
+                cell = parseField(new String(data, start, i - start, StandardCharsets.UTF_8).trim());
+            }
+            fields.add(cell);
+            if (i < length && data[i] == ',') {
+                i++;
+                if (i < length) {
+                    continue;
+                }
+                // Comma at the very end still has an empty field after it
+                fields.add(null);
+            }
+            // End of the line: skip the line break
+            lines.add(fields.toArray(new Cell[fields.size()]));
+            fields.clear();
+            i++;
+        }
+        return lines;
+    }
+
+    // Returns typed cell of an unquoted field, null if it's empty
+    private static Cell parseField(String field) {
+        if (field.equals("")) {
+            return null;
+        }
+        char first = field.charAt(0);
+        // Anything a number can start with, including NaN and Infinity. Other fields are text without trying to parse
+        if (Character.isDigit(first) || first == '.' || first == '-' || first == '+' || first == 'N' || first == 'I') {
+            try {
+                if (field.endsWith("%")) {
+                    return new PercentCell(field);
+                }
+                return new ValueCell(field);
+            } catch (NumberFormatException e) {
+                // Not a number, so it's text
+            }
+        }
+        return new TextCell(field);
+    }
+
+    // Parses a range of chunks, splitting itself so idle threads can steal chunks
+    private static class ParseTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer mapped;
+        private final int[] bounds;
+        // Parsed lines of each chunk. Tasks only set their own slots, so they never change the list's size
+        private final ArrayList<ArrayList<Cell[]>> chunks;
+        private final int start;
+        private final int end;
+
+        // Parses chunks from start (inclusive) to end (exclusive) into their slots of chunks
+        private ParseTask(ByteBuffer mapped, int[] bounds, ArrayList<ArrayList<Cell[]>> chunks, int start, int end) {
+            this.mapped = mapped;
+            this.bounds = bounds;
+            this.chunks = chunks;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= 1) {
+                for (int chunk = start; chunk < end; chunk++) {
+                    // Each chunk is copied out of the mapping once, so parsing reads a plain array
+                    int length = bounds[chunk + 1] - bounds[chunk];
+                    byte[] data = new byte[length];
+                    ByteBuffer view = mapped.duplicate();
+                    view.position(bounds[chunk]);
+                    view.get(data);
+                    chunks.set(chunk, parseChunk(data, length));
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new ParseTask(mapped, bounds, chunks, start, middle),
+                    new ParseTask(mapped, bounds, chunks, middle, end));
+        }
+    }
+
+}
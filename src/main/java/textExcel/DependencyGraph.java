@@ -0,0 +1,308 @@
+/*
+ * Tracks which cells each formula reads (precedents) and which formulas read each cell (dependents)
+ * so that a change only recalculates the formulas it can affect
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+package textExcel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+public class DependencyGraph {
+
+    // Cells are identified by keys from SpreadsheetLocation.pack
+    // Formula cell -> cells that it reads
+    private HashMap<Long, long[]> precedents;
+    // Cell -> formula cells that read it
+    private HashMap<Long, HashSet<Long>> dependents;
+    // Formula cell -> ranges that it reads, 4 ints per range: start row, start col, end row, end col
+    private HashMap<Long, int[]> rangePrecedents;
+    // Ranges aren't expanded into one edge per cell, since sum A1-A50000 would need 50000 of them.
+    // Instead each column of a range is split into O(log n) aligned blocks of 2^level rows, and
+    // column -> block key (level << 32 | row >> level) -> formula cells with a range covering that block.
+    // A cell is then in a range exactly when one of the blocks containing it, one per level, has the range's formula
+    private HashMap<Integer, HashMap<Long, HashSet<Long>>> rangeDependents;
+    // Highest block level used, so looking up a cell's blocks stops there
+    private int maxRangeLevel;
+
+    public DependencyGraph() {
+        precedents = new HashMap<>();
+        dependents = new HashMap<>();
+        rangePrecedents = new HashMap<>();
+        rangeDependents = new HashMap<>();
+    }
+
+    // Records that the formula at cell reads the given cells and ranges (4 ints per range: start row, start col,
+    // end row, end col), replacing whatever the cell read before
+    public void setPrecedents(long cell, long[] cellPrecedents, int[] ranges) {
+        removePrecedents(cell);
+        if (ranges.length > 0) {
+            rangePrecedents.put(cell, ranges);
+            for (int i = 0; i < ranges.length; i += 4) {
+                for (int col = ranges[i + 1]; col <= ranges[i + 3]; col++) {
+                    HashMap<Long, HashSet<Long>> columnBlocks = rangeDependents.get(col);
+                    if (columnBlocks == null) {
+                        columnBlocks = new HashMap<>();
+                        rangeDependents.put(col, columnBlocks);
+                    }
+                    for (long block : getBlocks(ranges[i], ranges[i + 2])) {
+                        HashSet<Long> blockDependents = columnBlocks.get(block);
+                        if (blockDependents == null) {
+                            blockDependents = new HashSet<>();
+                            columnBlocks.put(block, blockDependents);
+                        }
+                        blockDependents.add(cell);
+                        maxRangeLevel = Math.max(maxRangeLevel, (int) (block >> 32));
+                    }
+                }
+            }
+        }
+        precedents.put(cell, cellPrecedents);
+        for (long precedent : cellPrecedents) {
+            HashSet<Long> precedentDependents = dependents.get(precedent);
+            if (precedentDependents == null) {
+                precedentDependents = new HashSet<>();
+                dependents.put(precedent, precedentDependents);
+            }
+            precedentDependents.add(cell);
+        }
+    }
+
+    // Records that cell no longer reads any cells (it was cleared or is no longer a formula)
+    public void removePrecedents(long cell) {
+        int[] oldRanges = rangePrecedents.remove(cell);
+        if (oldRanges != null) {
+            for (int i = 0; i < oldRanges.length; i += 4) {
+                for (int col = oldRanges[i + 1]; col <= oldRanges[i + 3]; col++) {
+                    HashMap<Long, HashSet<Long>> columnBlocks = rangeDependents.get(col);
+                    for (long block : getBlocks(oldRanges[i], oldRanges[i + 2])) {
+                        HashSet<Long> blockDependents = columnBlocks.get(block);
+                        if (blockDependents != null) {
+                            blockDependents.remove(cell);
+                            if (blockDependents.isEmpty()) {
+                                columnBlocks.remove(block);
+                            }
+                        }
+                    }
+                    if (columnBlocks.isEmpty()) {
+                        rangeDependents.remove(col);
+                    }
+                }
+            }
+        }
+        long[] oldPrecedents = precedents.remove(cell);
+        if (oldPrecedents == null) {
+            return;
+        }
+        for (long precedent : oldPrecedents) {
+            HashSet<Long> precedentDependents = dependents.get(precedent);
+            if (precedentDependents != null) {
+                precedentDependents.remove(cell);
+                if (precedentDependents.isEmpty()) {
+                    dependents.remove(precedent);
+                }
+            }
+        }
+    }
+
+    // Removes all cells from the graph
+    public void clear() {
+        precedents.clear();
+        dependents.clear();
+        rangePrecedents.clear();
+        rangeDependents.clear();
+        maxRangeLevel = 0;
+    }
+
+    // Returns formula cells that directly read cell, by reference or through a range
+    public Set<Long> getDependents(long cell) {
+        HashSet<Long> cellDependents = dependents.get(cell);
+        HashMap<Long, HashSet<Long>> columnBlocks = rangeDependents.get(SpreadsheetLocation.unpackCol(cell));
+        if (columnBlocks == null) {
+            if (cellDependents == null) {
+                return Collections.emptySet();
+            }
+            return cellDependents;
+        }
+        HashSet<Long> allDependents = new HashSet<>();
+        if (cellDependents != null) {
+            allDependents.addAll(cellDependents);
+        }
+        int row = SpreadsheetLocation.unpackRow(cell);
+        for (int level = 0; level <= maxRangeLevel; level++) {
+            HashSet<Long> blockDependents = columnBlocks.get(((long) level << 32) | (row >> level));
+            if (blockDependents != null) {
+                allDependents.addAll(blockDependents);
+            }
+        }
+        return allDependents;
+    }
+
+    // Returns if any formula reads cell, by reference or through a range, without collecting them like getDependents
+    public boolean hasDependents(long cell) {
+        HashSet<Long> cellDependents = dependents.get(cell);
+        if (cellDependents != null && !cellDependents.isEmpty()) {
+            return true;
+        }
+        HashMap<Long, HashSet<Long>> columnBlocks = rangeDependents.get(SpreadsheetLocation.unpackCol(cell));
+        if (columnBlocks == null) {
+            return false;
+        }
+        int row = SpreadsheetLocation.unpackRow(cell);
+        for (int level = 0; level <= maxRangeLevel; level++) {
+            HashSet<Long> blockDependents = columnBlocks.get(((long) level << 32) | (row >> level));
+            if (blockDependents != null && !blockDependents.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Splits rows startRow to endRow into the fewest aligned blocks: block (level, index) covers
+    // rows index * 2^level to (index + 1) * 2^level - 1. Returns block keys, level << 32 | index
+    private static ArrayList<Long> getBlocks(int startRow, int endRow) {
+        ArrayList<Long> blocks = new ArrayList<>();
+        long row = startRow;
+        while (row <= endRow) {
+            int level = 0;
+            // Grow block while it stays aligned and inside the range
+            while (level < 30 && row % (2L << level) == 0 && row + (2L << level) - 1 <= endRow) {
+                level++;
+            }
+            blocks.add(((long) level << 32) | (row >> level));
+            row += 1L << level;
+        }
+        return blocks;
+    }
+
+    // Returns changed cells and every cell reachable from them through dependents, in topological order:
+    // each cell comes after every cell it reads that is also in the plan. Cells in circular references are found
+    // with Tarjan's strongly connected components algorithm, so planning is O(V + E) in the cells affected,
+    // not the size of the spreadsheet
+    public RecalculationPlan planRecalculation(Collection<Long> changedCells) {
+        ArrayList<Long> order = new ArrayList<>();
+        HashSet<Long> circularCells = new HashSet<>();
+
+        // Tarjan's algorithm, iterative so long chains can't overflow the stack
+        HashMap<Long, Integer> index = new HashMap<>();
+        HashMap<Long, Integer> lowLink = new HashMap<>();
+        ArrayDeque<Long> componentStack = new ArrayDeque<>();
+        HashSet<Long> onComponentStack = new HashSet<>();
+        ArrayDeque<Long> path = new ArrayDeque<>();
+        ArrayDeque<Iterator<Long>> pathDependents = new ArrayDeque<>();
+        // Changed cells that aren't formulas and that no formula reads. Nothing reaches them and they reach nothing,
+        // so they go anywhere in the order without being searched, which keeps bulk changes like imports cheap
+        long[] isolated = new long[16];
+        int isolatedCount = 0;
+
+        for (long start : changedCells) {
+            if (index.containsKey(start)) {
+                continue;
+            }
+            if (!precedents.containsKey(start) && !rangePrecedents.containsKey(start) && !hasDependents(start)) {
+                if (isolatedCount == isolated.length) {
+                    isolated = Arrays.copyOf(isolated, 2 * isolatedCount);
+                }
+                isolated[isolatedCount++] = start;
+                continue;
+            }
+            visit(start, index, lowLink, componentStack, onComponentStack, path, pathDependents);
+            while (!path.isEmpty()) {
+                long cell = path.peek();
+                Iterator<Long> next = pathDependents.peek();
+                if (next.hasNext()) {
+                    long dependent = next.next();
+                    if (!index.containsKey(dependent)) {
+                        visit(dependent, index, lowLink, componentStack, onComponentStack, path, pathDependents);
+                    } else if (onComponentStack.contains(dependent)) {
+                        lowLink.put(cell, Math.min(lowLink.get(cell), index.get(dependent)));
+                    }
+                    continue;
+                }
+                path.pop();
+                pathDependents.pop();
+                if (!path.isEmpty()) {
+                    long parent = path.peek();
+                    lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(cell)));
+                }
+                if (lowLink.get(cell).equals(index.get(cell))) {
+                    // Cell is the root of a component: pop the whole component.
+                    // Components are completed after every component that depends on them
+                    ArrayList<Long> component = new ArrayList<>();
+                    long member;
+                    do {
+                        member = componentStack.pop();
+                        onComponentStack.remove(member);
+                        component.add(member);
+                    } while (member != cell);
+                    // More than one cell, or a cell that reads itself, is a circular reference
+                    if (component.size() > 1 || getDependents(cell).contains(cell)) {
+                        circularCells.addAll(component);
+                    }
+                    order.addAll(component);
+                }
+            }
+        }
+        // Reverse completion order is a topological order
+        Collections.reverse(order);
+        // A cell can be changed more than once, but is only in the plan once
+        Arrays.sort(isolated, 0, isolatedCount);
+        for (int i = 0; i < isolatedCount; i++) {
+            if (i == 0 || isolated[i] != isolated[i - 1]) {
+                order.add(isolated[i]);
+            }
+        }
+        return new RecalculationPlan(order, circularCells);
+    }
+
+    // Splits the cells of a plan that aren't in a circular reference into levels: every cell reads only cells
+    // outside the plan or in earlier levels, so the cells of one level can be calculated at the same time
+    public ArrayList<ArrayList<Long>> getLevels(RecalculationPlan plan) {
+        HashMap<Long, Integer> levels = new HashMap<>();
+        ArrayList<ArrayList<Long>> cellsByLevel = new ArrayList<>();
+        // In topological order, a cell's level is final before it's pushed to its dependents
+        for (long cell : plan.getOrder()) {
+            if (plan.isCircular(cell)) {
+                continue;
+            }
+            Integer level = levels.get(cell);
+            if (level == null) {
+                level = 0;
+            }
+            if (level == cellsByLevel.size()) {
+                cellsByLevel.add(new ArrayList<Long>());
+            }
+            cellsByLevel.get(level).add(cell);
+            for (long dependent : getDependents(cell)) {
+                Integer dependentLevel = levels.get(dependent);
+                if (dependentLevel == null || dependentLevel <= level) {
+                    levels.put(dependent, level + 1);
+                }
+            }
+        }
+        return cellsByLevel;
+    }
+
+    // Gives cell the next Tarjan index and starts searching its dependents
+    private void visit(long cell, HashMap<Long, Integer> index, HashMap<Long, Integer> lowLink,
+                       ArrayDeque<Long> componentStack, HashSet<Long> onComponentStack,
+                       ArrayDeque<Long> path, ArrayDeque<Iterator<Long>> pathDependents) {
+        int cellIndex = index.size();
+        index.put(cell, cellIndex);
+        lowLink.put(cell, cellIndex);
+        componentStack.push(cell);
+        onComponentStack.add(cell);
+        path.push(cell);
+        pathDependents.push(getDependents(cell).iterator());
+    }
+
+}
@@ -8,6 +8,9 @@ package textExcel;
 
 public class EmptyCell implements Cell {
 
+    // Empty cells hold nothing, so one instance can be shared by every empty cell
+    public static final EmptyCell EMPTY = new EmptyCell();
+
     // text for spreadsheet cell display, must be exactly length 10
     public String abbreviatedCellText() {
         return "          ";
@@ -0,0 +1,295 @@
+/*
+ * Sorts more keys than fit in memory: keys are extracted and sorted in runs that fit in the memory budget,
+ * each run is spilled to a temporary file, and the runs are merged k ways through buffered file channels.
+ * At most MAX_FAN_IN runs are open at once. With more, groups of them are first merged into longer runs, in passes.
+ * Keys compare exactly like CellSorter's, and ties go to the earlier cell, so the order is the same as sorting in memory
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+package textExcel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+public class ExternalCellSorter {
+
+    // Estimated bytes of memory an in-memory sort takes per cell: the sorted order arrays, and per key column its
+    // rank, number, text reference and the cell read for it
+    private static final int BYTES_PER_CELL = 8;
+    private static final int BYTES_PER_KEY = 32;
+    // Size of the buffer of each run file
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Most runs merged at once, which bounds the open files and their buffers
+    public static final int MAX_FAN_IN = 64;
+
+    private final boolean[] ascending;
+    private final ArrayList<Path> runs;
+
+    // External sorter of cells or rows with the given direction of each key column
+    public ExternalCellSorter(boolean[] ascending) {
+        this.ascending = ascending;
+        runs = new ArrayList<>();
+    }
+
+    // Returns how many cells or rows with keyCount key columns can be sorted in memory within memoryBudget bytes
+    public static int getRunLength(long memoryBudget, int keyCount) {
+        long runLength = memoryBudget / (BYTES_PER_CELL + (long) BYTES_PER_KEY * keyCount);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, runLength));
+    }
+
+    // Sorts the cells or rows of one run in memory and spills their keys to a temporary file, in sorted order.
+    // firstIndex is the index of the run's first cell or row among everything being sorted. Runs must be added in order
+    public void addRun(Cell[][] keyColumns, int firstIndex) throws IOException {
+        CellSorter sorter = new CellSorter(keyColumns);
+        int[] order = sorter.sort(ascending);
+        Path run = Files.createTempFile("textexcel-sort", ".run");
+        runs.add(run);
+        try (FileChannel channel = FileChannel.open(run, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            for (int index : order) {
+                buffer = reserve(channel, buffer, 4);
+                buffer.putInt(firstIndex + index);
+                for (int key = 0; key < keyColumns.length; key++) {
+                    byte rank = sorter.getRank(key, index);
+                    double number = rank == CellSorter.RANK_NUMBER ? sorter.getNumber(key, index) : 0.0;
+                    String text = rank == CellSorter.RANK_TEXT ? sorter.getText(key, index) : null;
+                    buffer = putKey(channel, buffer, rank, number, text);
+                }
+            }
+            buffer.flip();
+            writeFully(channel, buffer);
+        }
+    }
+
+    // Merges the spilled runs, returning sorted order of all count cells or rows like CellSorter.sort
+    public int[] merge(int count) throws IOException {
+        // Each pass merges groups of MAX_FAN_IN runs into one, until few enough are left to merge at once
+        while (runs.size() > MAX_FAN_IN) {
+            ArrayList<Path> merged = new ArrayList<>();
+            for (int first = 0; first < runs.size(); first += MAX_FAN_IN) {
+                List<Path> group = runs.subList(first, Math.min(first + MAX_FAN_IN, runs.size()));
+                merged.add(group.size() == 1 ? group.get(0) : mergeIntoRun(group));
+            }
+            for (Path run : runs) {
+                if (!merged.contains(run)) {
+                    Files.deleteIfExists(run);
+                }
+            }
+            runs.clear();
+            runs.addAll(merged);
+        }
+
+        int[] order = new int[count];
+        ArrayList<RunReader> readers = new ArrayList<>();
+        try {
+            PriorityQueue<RunReader> queue = openRuns(runs, readers);
+            int position = 0;
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                order[position++] = reader.index;
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+        } finally {
+            closeRuns(readers);
+        }
+        return order;
+    }
+
+    // Merges group of runs into a new run file and returns it. Records are copied as they were read,
+    // so the new run sorts and compares exactly like the ones merged into it
+    private Path mergeIntoRun(List<Path> group) throws IOException {
+        Path run = Files.createTempFile("textexcel-sort", ".run");
+        ArrayList<RunReader> readers = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(run, StandardOpenOption.WRITE)) {
+            PriorityQueue<RunReader> queue = openRuns(group, readers);
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                buffer = reserve(channel, buffer, 4);
+                buffer.putInt(reader.index);
+                for (int key = 0; key < ascending.length; key++) {
+                    buffer = putKey(channel, buffer, reader.ranks[key], reader.numbers[key], reader.texts[key]);
+                }
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            buffer.flip();
+            writeFully(channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(run);
+            throw e;
+        } finally {
+            closeRuns(readers);
+        }
+        return run;
+    }
+
+    // Opens a reader for each of runs, adding them to readers, and returns queue of those that aren't empty
+    private PriorityQueue<RunReader> openRuns(List<Path> runs, ArrayList<RunReader> readers) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, runs.size()));
+        for (Path run : runs) {
+            RunReader reader = new RunReader(run, ascending);
+            readers.add(reader);
+            if (reader.next()) {
+                queue.add(reader);
+            }
+        }
+        return queue;
+    }
+
+    private static void closeRuns(ArrayList<RunReader> readers) throws IOException {
+        for (RunReader reader : readers) {
+            reader.channel.close();
+        }
+    }
+
+    // Deletes every run file
+    public void close() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+    }
+
+    // Writes one key of a record: its rank, then the number or text for the ranks that have one.
+    // Returns the buffer, which may have been replaced by a larger one
+    private static ByteBuffer putKey(FileChannel channel, ByteBuffer buffer, byte rank, double number, String text)
+            throws IOException {
+        buffer = reserve(channel, buffer, 9);
+        buffer.put(rank);
+        if (rank == CellSorter.RANK_NUMBER) {
+            buffer.putDouble(number);
+        } else if (rank == CellSorter.RANK_TEXT) {
+            // Text is written as its chars, so it reads back exactly
+            buffer.putInt(text.length());
+            buffer = reserve(channel, buffer, 2 * text.length());
+            for (int i = 0; i < text.length(); i++) {
+                buffer.putChar(text.charAt(i));
+            }
+        }
+        return buffer;
+    }
+
+    // Returns buffer with room for bytes more bytes, writing out what it holds first if needed
+    private static ByteBuffer reserve(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        buffer.flip();
+        writeFully(channel, buffer);
+        buffer.clear();
+        if (buffer.capacity() < bytes) {
+            return ByteBuffer.allocate(bytes);
+        }
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Reads the records of one run file, one at a time. Compares by its current record, then by index for stability
+    private static class RunReader implements Comparable<RunReader> {
+        private final FileChannel channel;
+        private final boolean[] ascending;
+        private ByteBuffer buffer;
+        // Current record
+        private int index;
+        private final byte[] ranks;
+        private final double[] numbers;
+        private final String[] texts;
+
+        private RunReader(Path run, boolean[] ascending) throws IOException {
+            channel = FileChannel.open(run, StandardOpenOption.READ);
+            this.ascending = ascending;
+            buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.flip();
+            ranks = new byte[ascending.length];
+            numbers = new double[ascending.length];
+            texts = new String[ascending.length];
+        }
+
+        // Reads next record. Returns false at the end of the run
+        private boolean next() throws IOException {
+            if (!fill(4)) {
+                return false;
+            }
+            index = buffer.getInt();
+            for (int key = 0; key < ranks.length; key++) {
+                require(1);
+                ranks[key] = buffer.get();
+                if (ranks[key] == CellSorter.RANK_NUMBER) {
+                    require(8);
+                    numbers[key] = buffer.getDouble();
+                } else if (ranks[key] == CellSorter.RANK_TEXT) {
+                    require(4);
+                    char[] chars = new char[buffer.getInt()];
+                    require(2 * chars.length);
+                    for (int i = 0; i < chars.length; i++) {
+                        chars[i] = buffer.getChar();
+                    }
+                    texts[key] = new String(chars);
+                }
+            }
+            return true;
+        }
+
+        // Makes sure bytes more bytes of the current record are buffered
+        private void require(int bytes) throws IOException {
+            if (!fill(bytes)) {
+                throw new IOException("Sort run file is truncated");
+            }
+        }
+
+        // Makes sure bytes more bytes are buffered. Returns false if the file ends first
+        private boolean fill(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return true;
+            }
+            if (buffer.capacity() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(bytes);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) == -1) {
+                    buffer.flip();
+                    if (buffer.hasRemaining()) {
+                        throw new IOException("Sort run file is truncated");
+                    }
+                    return false;
+                }
+            }
+            buffer.flip();
+            return true;
+        }
+
+        @Override
+        public int compareTo(RunReader other) {
+            for (int key = 0; key < ranks.length; key++) {
+                int comparison = CellSorter.compareKeys(ranks[key], numbers[key], texts[key],
+                        other.ranks[key], other.numbers[key], other.texts[key]);
+                if (comparison != 0) {
+                    return ascending[key] ? comparison : -comparison;
+                }
+            }
+            return Integer.compare(index, other.index);
+        }
+    }
+
+}
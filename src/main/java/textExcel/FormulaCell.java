@@ -6,265 +6,125 @@
  */
 package textExcel;
 
-import java.util.ArrayList;
-
 public class FormulaCell extends RealCell {
 
-    private ArrayList<String> operators;
+    // Formula compiled once on assignment. Reads only run this program, never the formula text
+    private CompiledFormula formula;
     private Spreadsheet parentSpreadsheet;
-    // List of cells. Used to store list of already-called cells when checking for circular references
-    private ArrayList<Cell> upstreamCells;
-
-    // Stores formula, sets up operators ArrayList, and stores spreadsheet that cell is in so it can reference values
+    // Memoized result of the last calculation, valid until a cell this formula reads changes and marks it dirty.
+    // Formulas that read this one use it too, so shared upstream formulas are calculated once per change
+    private double value;
+    private CellError error;
+    private boolean dirty;
+    // Reused by every calculation, so running the formula allocates nothing
+    private double[] stack;
+
+    // Stores and compiles formula, and stores spreadsheet that cell is in so it can reference values
     public FormulaCell(String value, Spreadsheet parentSpreadsheet) {
         super(value);
 
-        upstreamCells = new ArrayList<>();
+        // Throws IllegalArgumentException if formula is invalid, interrupting construction
+        formula = CompiledFormula.compile(value);
+        if (parentSpreadsheet != null) {
+            formula.checkBounds(parentSpreadsheet.getRows(), parentSpreadsheet.getCols());
+        }
+
+        error = CellError.NONE;
+        dirty = true;
+        stack = new double[formula.getStackSize()];
 
         this.parentSpreadsheet = parentSpreadsheet;
     }
 
-    // Returns calculated value or ERROR if error
+    // Formula text isn't a number: the value comes from calculating the formula
     @Override
-    public String abbreviatedCellText() {
-        // Clear circular reference cell list check
-        upstreamCells = new ArrayList<>();
-
-        // Catch runtime errors
-        try {
-            return (getDoubleValue() + "          ").substring(0, 10);
-        } catch (ArithmeticException | IllegalStateException e) { // Thrown if bad calculation or bad cell reference
-            return "#ERROR    ";
-        }
-
+    protected double parseValue(String text) {
+        return 0.0;
     }
 
-    // Gets the double value of a formula by calculating value
-    @Override
-    public double getDoubleValue() {
-        // Split by spaces and make all upper case
-        String[] expressionPartsArray = fullCellText().toUpperCase().split(" ");
-        ArrayList<String> expressionParts = new ArrayList<>();
-        for (String part : expressionPartsArray) {
-            expressionParts.add(part.toUpperCase());
-        }
-
-        // Remove empty elements (caused by 2+ spaces in a row)
-        for (int i = 0; i < expressionParts.size(); i++) {
-            if (expressionParts.get(i).equals("")) {
-                expressionParts.remove(i);
-                i--;
-            }
-        }
-
-        // Check for and discard ( and ) elements at beginning and end
-        if ( !(expressionParts.get(0).equals("(")) || !(expressionParts.get(expressionParts.size() - 1).equals(")")) ) {
-            throw new IllegalArgumentException("Must start and end with parenthesis");
-        }
-        expressionParts.remove(0);
-        expressionParts.remove(expressionParts.size() - 1);
-
-        // Check if sum or avg function
-        if (expressionParts.contains("SUM")) {
-            return functionSum(expressionParts);
-        } else if (expressionParts.contains("AVG")) {
-            return functionAvg(expressionParts);
-        }
-
-        // Verify proper expression: alternating number, operator, number, etc
-        for (int i = 1; i < expressionParts.size(); i += 2) {
-
-            evaluateStringValue(expressionParts.get(i - 1));
-
-            if (!operators.contains(expressionParts.get(i))) {
-                throw new IllegalArgumentException("Expression must alternate between numbers/cells and operators");
-            }
-        }
-        // last part must be number
-        evaluateStringValue(expressionParts.get(expressionParts.size()-1));
-
-
-        /*
-         Loop through elements of the array:
-         Get number, get operator and number after in next element, calculate and collapse
-         Loop through once only doing * and / operators, second time do all operators remaining (order of operations)
-        */
-
-        int i = 0;
-        while (i + 1 < expressionParts.size()) {
-            if (expressionParts.get(i+1).equals("*") || expressionParts.get(i+1).equals("/")) {
-                expressionParts.set(i, evaluateOperation(expressionParts.get(i), expressionParts.get(i + 1), expressionParts.get(i + 2)));
-                expressionParts.remove(i + 2);
-                expressionParts.remove(i + 1);
-            } else {
-                i += 2; // Jump over operator
-            }
-        }
-
-        while (1 < expressionParts.size()) {
-            expressionParts.set(0, evaluateOperation(expressionParts.get(0), expressionParts.get(1), expressionParts.get(2)));
-            expressionParts.remove(2);
-            expressionParts.remove(1);
-        }
-
-        return evaluateStringValue(expressionParts.get(0));
-
+    // Returns packed keys of every single cell this formula reads, for the spreadsheet's dependency graph
+    public long[] getPrecedents() {
+        return formula.getPrecedents();
     }
 
-    // Calculates and returns actual unformatted full value
-    // Allows FormulaCell to send an #ERROR value instead of a double if necessary but not truncate double like abbreviatedCellText
-    public String getFullStringValue() {
-        try {
-            return getDoubleValue() + "";
-        } catch (ArithmeticException | IllegalStateException e) { // Thrown if bad calculation (divide by zero, etc) or bad cell reference
-            return "#ERROR";
-        }
+    // Returns ranges this formula reads (4 ints per range: start row, start col, end row, end col), for the dependency graph
+    public int[] getRanges() {
+        return formula.getRanges();
     }
 
-    // Calculates and returns actual unformatted full value after checking for recursion by passing in list of cells
-    public String getValueCheckCircular(ArrayList<Cell> cells) {
-        if (cells.contains(this)) {
-            throw new IllegalStateException("Circular reference in formula");
-        }
-        cells.add(this);
-        upstreamCells = cells;
-        String fullValue = getFullStringValue();
-        upstreamCells.remove(this); // Remove cell from list to prevent issues when cells aren't circular but parallel referenced
-        return fullValue;
+    // Called when a cell this formula reads changed, so the stored value is out of date
+    public void markDirty() {
+        dirty = true;
+        invalidateCellText();
     }
 
-    // Executes operation given in string form the first number, operator, and second number
-    public String evaluateOperation(String num1, String operator, String num2) {
-        // Convert nums to doubles
-        double num1d = evaluateStringValue(num1);
-        double num2d = evaluateStringValue(num2);
-
-        switch (operator) {
-            case "+":
-                return num1d + num2d + "";
-            case "-":
-                return num1d - num2d + "";
-            case "*":
-                return num1d * num2d + "";
-            case "/":
-                // Check for division by zero
-                if (num2d == 0) {
-                    throw new ArithmeticException("Cannot divide by 0");
-                }
-                return num1d / num2d + "";
-        }
-        throw new AssertionError("An unknown error occurred");
+    // Returns if the stored value is out of date
+    public boolean isDirty() {
+        return dirty;
     }
 
-    // Converts either double or cell name from String into double
-    private double evaluateStringValue(String strNum) {
-        double num;
-        try {
-            num = parseCell(strNum);
-        } catch (IllegalArgumentException e) {
-            num = Double.parseDouble(strNum);
-        }
-        return num;
+    // Called when the dependency graph finds this formula in a circular reference, so it can't be calculated
+    public void markCircular() {
+        error = CellError.CIRCULAR_REFERENCE;
+        dirty = false;
+        invalidateCellText();
     }
 
-    // Parses and returns value of cell given name. If not a cell, throws an IllegalArgumentException
-    public double parseCell(String cellName) {
-        Cell cell = parentSpreadsheet.getCell(new SpreadsheetLocation(cellName));
-        if ( !(cell instanceof RealCell) ) {
-            throw new IllegalStateException("Referenced cell does not have a valid value.");
-        }
-        // If formula cell, run with circular reference checks
-        String value;
-        if (cell instanceof FormulaCell) {
-            value = ((FormulaCell) cell).getValueCheckCircular(upstreamCells);
-        } else {
-            value = ((RealCell) cell).getFullStringValue();
-        }
-        // If value is #ERROR, throw error
-        if (value.equals("#ERROR")) {
-            throw new IllegalStateException("Referenced cell has an error");
-        }
-        return Double.parseDouble(value);
+    // Sets value and error from an earlier calculation, like one kept in a snapshot, so it isn't calculated again
+    void restoreValue(double value, CellError error) {
+        this.value = value;
+        this.error = error;
+        dirty = false;
+        invalidateCellText();
     }
 
-    // Given arraylist of the inputs of function, calculates and returns avg of cell range
-    public double functionSum(ArrayList<String> function) {
-        // If arrayList is not length 2 ("avg" and range), error out
-        if (function.size() != 2) {
-            throw new IllegalArgumentException("Sum function must only contain the word 'sum' and a range, like A1-C5");
+    // Returns error state from the last calculation, NONE if the formula has a value
+    public CellError getError() {
+        if (dirty) {
+            recalculate();
         }
-        String range = function.get(1);
-
-        return getCellRangeSum(range);
-
+        return error;
     }
 
-    // Given arraylist of the inputs of function, calculates and returns avg of cell range
-    public double functionAvg(ArrayList<String> function) {
-        // If arrayList is not length 2 ("avg" and range), error out
-        if (function.size() != 2) {
-            throw new IllegalArgumentException("Avg function must only contain the word 'avg' and a range, like A1-C5");
-        }
-        String range = function.get(1);
-
-        return getCellRangeSum(range)/ getCellRangeCount(range);
+    // Runs the compiled formula and stores the result. Errors come back as a CellError, nothing is thrown
+    // Circular references are found by the dependency graph before this is called, so there is no check for them here
+    public void recalculate() {
+        error = formula.evaluate(parentSpreadsheet, stack);
+        value = stack[0];
+        dirty = false;
+        invalidateCellText();
     }
 
-    // Sets up test info and tests for pattern of alternating cells and numbers.
-    public void validate() {
-        // Assign dummy spreadsheet if a spreadsheet doesn't already exist
-        if (parentSpreadsheet == null) {
-            parentSpreadsheet = new Spreadsheet();
-            // Fill spreadsheet with temporary random real value to prevent premature test stopping
-            for (int i = 0; i < parentSpreadsheet.getRows(); i++) {
-                for (int j = 0; j < parentSpreadsheet.getCols(); j++) {
-                    parentSpreadsheet.setCell(new ValueCell(Math.random() + 1 + ""), i, j);
-                }
-            }
+    // Returns calculated value or ERROR if error
+    @Override
+    protected String formatCellText() {
+        if (getError() != CellError.NONE) {
+            return "#ERROR    ";
         }
-        // Fill operator array
-        operators = new ArrayList<>();
-        operators.add("+");
-        operators.add("-");
-        operators.add("*");
-        operators.add("/");
-
-        // Test with spreadsheet
-        abbreviatedCellText();
+        return CellFormatter.formatValue(value);
     }
 
-    // Get sum of values from cell range
-    public double getCellRangeSum(String range) {
-
-        String[] corners = range.split("-");
-        if ( !(corners.length == 2) ) {
-            throw new IllegalArgumentException("Invalid avg expression. Must only contain avg and a range of 2 cells separated by a - without spaces.");
-        }
-
-        SpreadsheetLocation corner1 = new SpreadsheetLocation(corners[0]);
-        SpreadsheetLocation corner2 = new SpreadsheetLocation(corners[1]);
-        double sum = 0.0;
-        for (int i = corner1.getRow(); i <= corner2.getRow(); i++) {
-            for (int j = corner1.getCol(); j <= corner2.getCol(); j++) {
-                String cellName = (char) (j + 'A') + "" + (i + 1);
-                sum += parseCell(cellName);
-            }
+    // Gets the double value of a formula. Throws IllegalStateException if formula has an error
+    @Override
+    public double getDoubleValue() {
+        if (getError() != CellError.NONE) {
+            throw new IllegalStateException("Formula has an error");
         }
-        return sum;
+        return value;
     }
 
-    // Get count of cells in cell range - does not distinguish between different cell types including empty
-
-    public double getCellRangeCount(String range) {
-        String[] corners = range.split("-");
-        if ( !(corners.length == 2) ) {
-            throw new IllegalArgumentException("Invalid avg expression. Must only contain avg and a range of 2 cells separated by a - without spaces.");
+    // Returns actual unformatted full value
+    // Allows FormulaCell to send an #ERROR value instead of a double if necessary but not truncate double like abbreviatedCellText
+    public String getFullStringValue() {
+        if (getError() != CellError.NONE) {
+            return "#ERROR";
         }
+        return value + "";
+    }
 
-        SpreadsheetLocation corner1 = new SpreadsheetLocation(corners[0]);
-        SpreadsheetLocation corner2 = new SpreadsheetLocation(corners[1]);
-        // Multiply dimensions together to get count
-        return ( corner2.getRow() - corner1.getRow() + 1 ) * ( corner2.getCol() - corner1.getCol() + 1 );
+    // Formula is validated by compiling it in the constructor, so nothing needs to be evaluated here
+    @Override
+    public void validate() {
     }
 
 }
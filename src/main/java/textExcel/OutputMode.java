@@ -0,0 +1,13 @@
+/*
+ * What commands that change cells display afterwards
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+package textExcel;
+
+public enum OutputMode {
+    FULL, // The spreadsheet, or the viewport if one is set
+    DIFF, // Only the cells that changed, one per line, like "A1 = 5.0"
+    ACK // Only OK, or the error
+}
@@ -13,10 +13,15 @@ public class PercentCell extends ValueCell {
         super(percent);
     }
 
-    // Returns actual decimal value
+    // Rebuilds cell from its percent text and already parsed decimal value
+    PercentCell(String percent, double doubleValue) {
+        super(percent, doubleValue);
+    }
+
+    // Actual decimal value is the percent without its sign, divided by 100
     @Override
-    public double getDoubleValue() {
-        return Double.parseDouble(super.fullCellText().substring(0, super.fullCellText().length() - 1)) / 100;
+    protected double parseValue(String percent) {
+        return Double.parseDouble(percent.substring(0, percent.length() - 1)) / 100;
     }
 
     // Keeps precision by methods that need percent value
@@ -26,10 +31,10 @@ public class PercentCell extends ValueCell {
 
     // Returns value as a string in percent form, rounded down
     @Override
-    public String abbreviatedCellText() {
-        // Add spaces, get 9 characters, remove extra spaces, add percent sign, add spaces, trim to 10 characters
+    protected String formatCellText() {
+        // At most 9 characters of the rounded percent, then the percent sign, padded to 10 characters
         // This ensures that the percent sign is where it needs to be
-        return (((int) (getPercentValue()) + "          ").substring(0, 9).trim() + "%         ").substring(0,10);
+        return CellFormatter.formatPercent(getPercentValue());
     }
 
     // Returns full cell text of actual decimal value, no sign
@@ -0,0 +1,228 @@
+/*
+ * Per-column Fenwick trees over cell values, so sum and avg over long ranges take O(log n) per column
+ * instead of visiting every cell. A column's tree is built the first time a range in it is summed
+ * and kept up to date by the spreadsheet after that.
+ *
+ * Node sums are kept as a double and its rounding error (compensated summation), so a range sum taken as the difference
+ * of two prefix sums stays exact when much larger values come before the range, and changing a value many times
+ * doesn't make the sums drift.
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+package textExcel;
+
+import java.util.HashMap;
+
+public class RangeSumIndex {
+
+    // Ranges covering fewer rows than this are summed cell by cell, which is just as fast and exactly matches
+    // the order the values are added in. Longer ranges use the tree
+    public static final int MIN_INDEXED_ROWS = 64;
+
+    private Spreadsheet sheet;
+    // Column index -> trees for that column. Only columns that have been summed are here
+    private HashMap<Integer, Column> columns;
+
+    public RangeSumIndex(Spreadsheet sheet) {
+        this.sheet = sheet;
+        columns = new HashMap<>();
+    }
+
+    // Trees for one column. Arrays are 1-based Fenwick trees over rows, except values which holds each row's value
+    private static class Column {
+        private double[] values;
+        private boolean[] hasValue;
+        // Sum of finite values, and the rounding error left out of each sum
+        private double[] sums;
+        private double[] sumErrors;
+        // Number of cells with a value, and number with a finite value (infinity and NaN can't be subtracted back out)
+        private int[] valueCounts;
+        private int[] finiteCounts;
+
+        private Column(int rows) {
+            values = new double[rows];
+            hasValue = new boolean[rows];
+            sums = new double[rows + 1];
+            sumErrors = new double[rows + 1];
+            valueCounts = new int[rows + 1];
+            finiteCounts = new int[rows + 1];
+        }
+    }
+
+    // Drops every column, for when the whole spreadsheet is cleared
+    public synchronized void clear() {
+        columns.clear();
+    }
+
+    // Updates cell's value in its column's trees, if the column has been built. Called whenever a cell or its value changes
+    public synchronized void update(int row, int col, Cell cell) {
+        Column column = columns.get(col);
+        if (column == null) {
+            return;
+        }
+        boolean hadValue = column.hasValue[row];
+        double oldValue = column.values[row];
+        boolean hasValue = hasValue(cell);
+        double value = hasValue ? ((RealCell) cell).getDoubleValue() : 0.0;
+        if (hadValue == hasValue && Double.compare(oldValue, value) == 0) {
+            return;
+        }
+        column.values[row] = value;
+        column.hasValue[row] = hasValue;
+        int countChange = (hasValue ? 1 : 0) - (hadValue ? 1 : 0);
+        boolean wasFinite = hadValue && isFinite(oldValue);
+        boolean isFinite = hasValue && isFinite(value);
+        int finiteChange = (isFinite ? 1 : 0) - (wasFinite ? 1 : 0);
+        for (int i = row + 1; i < column.sums.length; i += i & -i) {
+            // New value is added and old one taken out separately, since their difference could itself be rounded
+            if (isFinite) {
+                add(column.sums, column.sumErrors, i, value);
+            }
+            if (wasFinite) {
+                add(column.sums, column.sumErrors, i, -oldValue);
+            }
+            column.valueCounts[i] += countChange;
+            column.finiteCounts[i] += finiteChange;
+        }
+    }
+
+    // Returns first row of column col from startRow to endRow whose cell has no value that can be summed, or -1 if
+    // every cell has one. Found by descending the count tree, so it's O(log n) however far into the range it is
+    public int getFirstRowWithoutValue(int col, int startRow, int endRow) {
+        Column column = getColumn(col);
+        if (startRow > endRow) {
+            return -1;
+        }
+        // Rows without a value among the first p rows is p - count(p), which never decreases as p grows.
+        // Look for the first p where it goes past the number before startRow
+        int target = startRow - count(column.valueCounts, startRow) + 1;
+        int rows = column.values.length;
+        int position = 0;
+        int step = Integer.highestOneBit(rows);
+        for (; step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= rows && step - column.valueCounts[next] < target) {
+                position = next;
+                target -= step - column.valueCounts[next];
+            }
+        }
+        // position is now the last prefix length before the target is reached, so row position is the one without a value
+        return position <= endRow ? position : -1;
+    }
+
+    // Returns sum of column col from startRow to endRow. Only valid if getFirstRowWithoutValue is -1 for the same cells
+    public double getColumnSum(int col, int startRow, int endRow) {
+        Column column = getColumn(col);
+        int rowCount = endRow - startRow + 1;
+        if (rowCount <= 0) {
+            return 0.0;
+        }
+        if (count(column.finiteCounts, endRow + 1) == count(column.finiteCounts, startRow) + rowCount) {
+            // Nodes of the prefix up to endRow are added and nodes of the prefix before startRow taken out,
+            // all into one compensated sum
+            double sum = 0.0;
+            double error = 0.0;
+            for (int i = endRow + 1; i > 0; i -= i & -i) {
+                double next = sum + column.sums[i];
+                error += twoSumError(sum, column.sums[i], next) + column.sumErrors[i];
+                sum = next;
+            }
+            for (int i = startRow; i > 0; i -= i & -i) {
+                double next = sum - column.sums[i];
+                error += twoSumError(sum, -column.sums[i], next) - column.sumErrors[i];
+                sum = next;
+            }
+            sum += error;
+            // Finite values whose sum overflowed leave infinity or NaN in the tree, so those are added up below instead
+            if (isFinite(sum)) {
+                return sum;
+            }
+        }
+        // Infinity or NaN in range: add up the values so the result is what adding them gives
+        double sum = 0.0;
+        for (int row = startRow; row <= endRow; row++) {
+            sum += column.values[row];
+        }
+        return sum;
+    }
+
+    // Returns trees for column, building them from the spreadsheet if it hasn't been summed before
+    // Synchronized since formulas of one recalculation level can be summing at the same time
+    private synchronized Column getColumn(int col) {
+        Column column = columns.get(col);
+        if (column != null) {
+            return column;
+        }
+        int rows = sheet.getRows();
+        column = new Column(rows);
+        for (int row = 0; row < rows; row++) {
+            byte type = sheet.getCellType(row, col);
+            // Values and percents are read as numbers, without building a cell
+            if (type == CellStorage.VALUE || type == CellStorage.PERCENT) {
+                column.hasValue[row] = true;
+                column.values[row] = sheet.getNumber(row, col);
+            } else if (type == CellStorage.FORMULA && hasValue(sheet.getCell(row, col))) {
+                column.hasValue[row] = true;
+                column.values[row] = ((RealCell) sheet.getCell(row, col)).getDoubleValue();
+            }
+            if (column.hasValue[row]) {
+                column.valueCounts[row + 1] = 1;
+                if (isFinite(column.values[row])) {
+                    column.sums[row + 1] = column.values[row];
+                    column.finiteCounts[row + 1] = 1;
+                }
+            }
+        }
+        // Linear time Fenwick build: push each node into its parent
+        for (int i = 1; i <= rows; i++) {
+            int parent = i + (i & -i);
+            if (parent <= rows) {
+                add(column.sums, column.sumErrors, parent, column.sums[i]);
+                column.sumErrors[parent] += column.sumErrors[i];
+                column.valueCounts[parent] += column.valueCounts[i];
+                column.finiteCounts[parent] += column.finiteCounts[i];
+            }
+        }
+        columns.put(col, column);
+        return column;
+    }
+
+    // Returns if cell has a numerical value that can be summed
+    // A formula waiting to be recalculated has none yet: the spreadsheet updates it once it's recalculated
+    private static boolean hasValue(Cell cell) {
+        if (cell instanceof FormulaCell) {
+            FormulaCell formula = (FormulaCell) cell;
+            return !formula.isDirty() && formula.getError() == CellError.NONE;
+        }
+        return cell instanceof RealCell;
+    }
+
+    private static boolean isFinite(double value) {
+        return !Double.isInfinite(value) && !Double.isNaN(value);
+    }
+
+    // Adds value to node i of sums, keeping what rounding leaves out in errors
+    private static void add(double[] sums, double[] errors, int i, double value) {
+        double sum = sums[i] + value;
+        double error = errors[i] + twoSumError(sums[i], value, sum);
+        // Move what fits of the error into the sum, so the error stays small next to it
+        sums[i] = sum + error;
+        errors[i] = error - (sums[i] - sum);
+    }
+
+    // Returns exact a + b less sum, the rounded a + b (Knuth's two-sum)
+    private static double twoSumError(double a, double b, double sum) {
+        double bPart = sum - a;
+        return (a - (sum - bPart)) + (b - bPart);
+    }
+
+    // Prefix count of the first rows entries of tree
+    private static int count(int[] tree, int rows) {
+        int count = 0;
+        for (int i = rows; i > 0; i -= i & -i) {
+            count += tree[i];
+        }
+        return count;
+    }
+}
@@ -8,17 +8,47 @@ package textExcel;
 
 public abstract class RealCell implements Cell, Comparable<RealCell> {
     private String value;
+    // Numerical value, parsed once on creation so reading the cell never goes through a String
+    private double doubleValue;
+    // Display text, formatted the first time it's asked for. null until then or after the value changes
+    private String cellText;
 
     public RealCell(String value) {
         this.value = value;
+        // Throws NumberFormatException (an IllegalArgumentException) if not a number
+        doubleValue = parseValue(value);
         // Verify is valid
         validate();
     }
 
-    // Returns cell, length 10 exactly
+    // Creates cell from text that was already parsed and validated, like when storage rebuilds a cell it kept as a number
+    protected RealCell(String value, double doubleValue) {
+        this.value = value;
+        this.doubleValue = doubleValue;
+    }
+
+    // Converts entered text into the cell's numerical value. Can be overridden
+    protected double parseValue(String text) {
+        return Double.parseDouble(text);
+    }
+
+    // Returns cell, length 10 exactly. Formatted once and then kept, so printing an unchanged cell formats nothing
     @Override
     public String abbreviatedCellText() {
-        return (getDoubleValue() + "          ").substring(0, 10);
+        if (cellText == null) {
+            cellText = formatCellText();
+        }
+        return cellText;
+    }
+
+    // Formats display text of cell, length 10 exactly. Can be overridden
+    protected String formatCellText() {
+        return CellFormatter.formatValue(getDoubleValue());
+    }
+
+    // Drops display text so it's formatted again, for subclasses whose value can change
+    protected void invalidateCellText() {
+        cellText = null;
     }
 
     // Returns full unevaluated value. Can be overridden
@@ -29,7 +59,7 @@ public abstract class RealCell implements Cell, Comparable<RealCell> {
 
     // returns double value of cell
     public double getDoubleValue() {
-        return Double.parseDouble(fullCellText());
+        return doubleValue;
     }
 
     // Returns full actual unformatted value
@@ -0,0 +1,38 @@
+/*
+ * Cells to recalculate after a change, in topological order, and which of them are part of a circular reference
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+package textExcel;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+public class RecalculationPlan {
+
+    // Packed keys (see SpreadsheetLocation.pack) of cells, each after every cell it reads that is also in the plan
+    private ArrayList<Long> order;
+    // Cells in a circular reference. They can't be calculated, so they are not in any order relative to each other
+    private HashSet<Long> circularCells;
+
+    public RecalculationPlan(ArrayList<Long> order, HashSet<Long> circularCells) {
+        this.order = order;
+        this.circularCells = circularCells;
+    }
+
+    // Returns cells in topological order
+    public ArrayList<Long> getOrder() {
+        return order;
+    }
+
+    // Returns number of cells in the plan
+    public int size() {
+        return order.size();
+    }
+
+    // Returns if cell is part of a circular reference
+    public boolean isCircular(long cell) {
+        return circularCells.contains(cell);
+    }
+}
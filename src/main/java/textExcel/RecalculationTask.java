@@ -0,0 +1,41 @@
+/*
+ * Recalculates a slice of formulas that don't read each other, splitting itself so idle threads can steal work
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+package textExcel;
+
+import java.util.ArrayList;
+import java.util.concurrent.RecursiveAction;
+
+public class RecalculationTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    // Slices this size or smaller are recalculated on the current thread instead of being split further
+    private static final int SLICE_SIZE = 256;
+
+    private ArrayList<FormulaCell> formulas;
+    private int start;
+    private int end;
+
+    // Recalculates formulas from start (inclusive) to end (exclusive)
+    public RecalculationTask(ArrayList<FormulaCell> formulas, int start, int end) {
+        this.formulas = formulas;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+        if (end - start <= SLICE_SIZE) {
+            for (int i = start; i < end; i++) {
+                formulas.get(i).recalculate();
+            }
+            return;
+        }
+        int middle = (start + end) >>> 1;
+        invokeAll(new RecalculationTask(formulas, start, middle), new RecalculationTask(formulas, middle, end));
+    }
+}
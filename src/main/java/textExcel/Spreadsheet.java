@@ -7,25 +7,88 @@
 
 package textExcel;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
 
 public class Spreadsheet implements Grid
 {
-	private Cell[][] sheet;
-	private ArrayList<String> history;
-	private int historyLength;
+	// Where cells are kept. Empty cells may not be stored at all
+	private CellStorage sheet;
+	// Which formulas read which cells, so a change only recalculates the formulas it affects
+	private DependencyGraph dependencies;
+	// Cells changed since the last recalculation
+	private ArrayList<Long> changedCells;
+	// Per-column sums used by sum and avg over long ranges
+	private RangeSumIndex rangeSumIndex;
+	// Threads used to recalculate independent formulas at the same time. 1 recalculates on the calling thread
+	private int recalculationThreads;
+	private ForkJoinPool recalculationPool;
+	// Reused by writeGrid to put together one row at a time
+	private StringBuilder renderBuffer;
+	// Rendered cells of each row of the range last written, from rowCacheStartCol to rowCacheEndCol,
+	// like "|5.0       |          |", indexed from rowCacheStartRow. A row's line is only valid while its bit
+	// in renderedRows is set: the bit is cleared when a cell in the row is set or recalculated, so printing
+	// an unchanged row copies the line instead of visiting its cells. Only one range is kept, like the viewport,
+	// and ranges taller than MAX_CACHED_ROWS aren't kept at all
+	private String[] rowLines;
+	private BitSet renderedRows;
+	private int rowCacheStartRow;
+	private int rowCacheStartCol;
+	private int rowCacheEndCol;
+	// Corners (packed keys) of the cells displayed after commands and by print, the entire spreadsheet by default
+	private long viewportStart;
+	private long viewportEnd;
+	// Corners of the cells the current command displays: the viewport, or the range given to print
+	private long displayStart;
+	private long displayEnd;
+	// What commands that change cells display
+	private OutputMode outputMode;
+	// Set by print, which always displays cells whatever the output mode
+	private boolean printRequested;
+	// Cells recalculated by the current command, only tracked in DIFF mode, and if it cleared every cell
+	private ArrayList<Long> changedDisplayCells;
+	private boolean clearedAll;
+	// Remembered commands, null while history is stopped
+	private CommandHistory history;
+	// Set by history display, so the history is streamed to the output instead of the grid
+	private boolean historyRequested;
+	// Bytes of memory a sort may use for its keys. Ranges with more keys are sorted externally, through temporary files
+	private long sortMemoryBudget;
+	// Write-ahead journal of commands that change cells, null unless a journal is open
+	private CommandJournal journal;
+	// Set whenever the current command changes a cell, so only commands that did are journaled
+	private boolean cellsChanged;
+	// Set by load, so the journal takes a checkpoint instead of depending on the loaded file
+	private boolean checkpointRequested;
+
+	// Recalculations smaller than this are done on one thread, since splitting them costs more than it saves
+	private static final int PARALLEL_THRESHOLD = 1000;
+	// Tallest range whose rendered rows are cached. Taller ones are mostly a whole large sheet, printed rarely
+	private static final int MAX_CACHED_ROWS = 1 << 10;
 
 	// Command reference data. Array of string arrays: index 0 is command, index 1 is command syntax, index 2 is description, index 3 is long description
 	// Use printf to print out nice table or loop through IDs to get all commands.
 	private static final String[][] commands = {
 			{"   ID    ", "   Command syntax   ", "                 Description                 ", "More info"},
 			{"----------", "--------------------", "---------------------------------------------", "------"},
-			{"<cell>", "<cell>", "Outputs the value of a cell", "Shows the full raw value of a given cell without formatting or running calculations.\n\t\tCell must be in range of spreadsheet: row 0-20 and column A-L."},
-			{"print", "print", "Prints full spreadsheet", "Prints out the entire spreadsheet and its data without modifying it"},
+			{"<cell>", "<cell>", "Outputs the value of a cell", "Shows the full raw value of a given cell without formatting or running calculations.\n\t\tCell must be in range of spreadsheet, like row 1-20 and column A-L by default. Columns after Z are AA, AB and so on."},
+			{"print", "print [range]", "Prints spreadsheet or range", "'print' prints the cells in the viewport (see 'help viewport') without modifying them,\n\t\t'print <cell>-<cell>' prints just that range, like 'print A1-C5'"},
+			{"output", "output <mode>", "Sets what edits display", "'output full' displays the spreadsheet after commands that change cells (default)\n\t\t'output diff' displays only the cells that changed, one per line like 'A1 = 5.0'\n\t\t'output ack' displays only OK or the error"},
+			{"viewport", "viewport [range]", "Limits displayed cells", "'viewport <cell>-<cell>' only displays that range after commands and in 'print', like 'viewport A1-F10'\n\t\t'viewport' displays the entire spreadsheet again"},
 			{"history", "history <args>", "Interact with history", "'history start <count>' enables history with <count> max remembered commands\n\t\t'history display' displays the current history buffer\n\t\t'history clear <count>' clears <count> commands from history starting with older commands\n\t\t'history stop' stops history logging and clears logs."},
 			{"clear", "clear [cell]", "Clears cell data", "'clear' clears entire spreadsheet, 'clear [cell]' clears just that cell, like 'clear A1'"},
+			{"save", "save <file> [deflate]", "Saves all cells to a file", "'save <file>' writes every cell to a binary snapshot file, formulas with their calculated values,\n\t\t'save <file> deflate' compresses it, for archiving"},
+			{"load", "load <file>", "Loads cells saved to a file", "'load <file>' replaces every cell with the cells saved by 'save <file>'. The file must be saved from a spreadsheet of the same size"},
+			{"import", "import csv <file> <cell>", "Imports cells from a CSV file", "'import csv <file> <cell>' puts the fields of a CSV file into cells, its first field at <cell>, like 'import csv data.csv A1'.\n\t\tQuoted fields are text, fields like 5 or 12% are values or percents, anything else is text"},
+			{"export", "export csv <file> [range]", "Exports cells to a CSV file", "'export csv <file>' writes every cell from A1 to the last non-empty row and column to a CSV file,\n\t\t'export csv <file> <cell>-<cell>' writes just that range. Formulas are written as their values"},
+			{"sort", "sort<a|d|rows> <args>", "Sorts cells or rows of a range", "'sorta <cell>-<cell>' and 'sortd <cell>-<cell>' sort the cells of a range in ascending or descending order, row by row\n\t\t'sort rows <cell>-<cell> by <col> [asc|desc], ...' reorders whole rows of the range by the given columns, later columns breaking ties,\n\t\tlike 'sort rows A2-D50 by B desc, A'. Empty cells come first, then text, then numbers"},
 			{"help", "help [command ID]", "Print info on given or all commands.", "'help' shows all commands, 'help [command]' like 'help clear' or 'help \"str\"' shows help on specific command.\n\t\tUse <cell> or [cell] in place of a cell and <expr> or [expr] in place of an expression."},
-			{"quit", "quit", "Exits the program and discards data."},
+			{"quit", "quit", "Exits the program. Unsaved cells are lost", "'quit' exits the program. Cells are lost unless they were saved with 'save <file>',\n\t\tor the program was started with --journal=<file>, which restores them the next time it starts with that journal"},
 			{"=", "<cell> = <expr>", "Assigns a value to a cell", "Cell must be in range (see 'help <cell>'). See `help <expr>` for more info"},
 			{"----------", "--------------------", "---------------------------------------------", "------"},
 			{"<expr>", "     Expression     ", "Explanation of different types of expressions", "\"<text>\" is a text value - must be surrounded by quotes\n\t\t<value> is a numerical value - do not surround by anything.\n\t\t<perc>% is a percentage - do not surround by anything but add percent sign to end\n\t\t( <formula> ) is a mathematical expression - see 'help <formula>'"},
@@ -38,29 +101,368 @@ public class Spreadsheet implements Grid
 	};
 
 
+	// Default 20 row by 12 column spreadsheet
 	public Spreadsheet() {
-		// Create new cell array
-		sheet = new Cell[20][12];
-		// Fill array with Empty Cells
-		clearFullSpreadsheet();
-		// Set up history data
-		history = new ArrayList<>();
-		historyLength = -1; // -1 signifies history disabled
+		this(20, 12);
 	}
 
-	// Assign all cells in array an EmptyCell
+	// Spreadsheet of any size. Cells are stored sparsely, so only populated cells take up memory
+	public Spreadsheet(int rows, int cols) {
+		this(new ChunkedCellStorage(rows, cols));
+	}
+
+	// Spreadsheet using a given storage engine, which should be empty
+	public Spreadsheet(CellStorage storage) {
+		sheet = storage;
+		dependencies = new DependencyGraph();
+		changedCells = new ArrayList<>();
+		rangeSumIndex = new RangeSumIndex(this);
+		recalculationThreads = 1;
+		renderBuffer = new StringBuilder();
+		renderedRows = new BitSet();
+		resetViewport();
+		outputMode = OutputMode.FULL;
+		changedDisplayCells = new ArrayList<>();
+		// Start with every cell empty
+		clearCells();
+		// History is stopped until 'history start'
+		history = null;
+		sortMemoryBudget = Runtime.getRuntime().maxMemory() / 4;
+	}
+
+	// Empty every cell. Returns the spreadsheet
 	public String clearFullSpreadsheet() {
-		for (int i = 0; i < sheet.length; i++) {
-			for (int j = 0; j < sheet[i].length; j++) {
-				sheet[i][j] = new EmptyCell();
+		clearCells();
+		return toString();
+	}
+
+	// Empty every cell without printing the spreadsheet
+	private void clearCells() {
+		sheet.clear();
+		clearedAll = true;
+		cellsChanged = true;
+		renderedRows.clear();
+		// No formulas are left, so nothing depends on anything
+		dependencies.clear();
+		changedCells.clear();
+		rangeSumIndex.clear();
+	}
+
+	// Restores the spreadsheet, which should be empty, from the journal at path and its latest snapshot,
+	// then journals every command that changes cells. Journaled commands are forced to disk every syncBatch commands,
+	// and a snapshot is taken every checkpointInterval commands. Returns number of commands replayed from the journal
+	public int openJournal(Path path, int syncBatch, int checkpointInterval) throws IOException {
+		if (journal != null) {
+			throw new IllegalStateException("A journal is already open");
+		}
+		CommandJournal opened = new CommandJournal(path, syncBatch, checkpointInterval);
+		// Replayed commands aren't journaled again, since the journal isn't attached until they're done
+		int replayed = opened.open(this);
+		journal = opened;
+		return replayed;
+	}
+
+	// Forces journaled commands to disk and stops journaling
+	public void closeJournal() throws IOException {
+		if (journal != null) {
+			journal.close();
+			journal = null;
+		}
+	}
+
+	// Empties every cell before SpreadsheetSnapshot loads cells with loadCell
+	void beginLoad() {
+		clearCells();
+	}
+
+	// Stores a cell loaded by SpreadsheetSnapshot. Formulas keep their loaded values, so nothing is recalculated:
+	// they're only added to the dependency graph
+	void loadCell(Cell cell, int row, int col) {
+		sheet.set(row, col, cell);
+		if (cell instanceof FormulaCell) {
+			FormulaCell formula = (FormulaCell) cell;
+			dependencies.setPrecedents(SpreadsheetLocation.pack(row, col), formula.getPrecedents(), formula.getRanges());
+		}
+	}
+
+	// Save command handler. Returns message saying how many cells were saved, or an error
+	public String commandSave(String command) {
+		String file = command.substring(4).trim();
+		boolean compress = false;
+		if (file.toLowerCase().endsWith(" deflate")) {
+			compress = true;
+			file = file.substring(0, file.length() - " deflate".length()).trim();
+		}
+		try {
+			long cells = SpreadsheetSnapshot.write(this, Paths.get(file), compress, 0);
+			return "Saved " + cells + " cells to " + file;
+		} catch (IOException | RuntimeException e) {
+			return "ERROR: Could not save " + file + ": " + e.getMessage();
+		}
+	}
+
+	// Load command handler. Returns message saying the file was loaded, or an error
+	public String commandLoad(String command) {
+		String file = command.substring(4).trim();
+		try {
+			SpreadsheetSnapshot.read(this, Paths.get(file));
+		} catch (IOException | RuntimeException e) {
+			return "ERROR: Could not load " + file + ": " + e.getMessage();
+		}
+		checkpointRequested = true;
+		return "Loaded " + file;
+	}
+
+	// Import command handler, like "import csv data.csv A1". Every field is stored before one recalculation.
+	// Returns message saying how many cells were imported, or an error, in which case no cell is changed
+	public String commandImport(String command) {
+		String arguments = command.substring(6).trim();
+		int lastSpace = arguments.lastIndexOf(' ');
+		if (!arguments.toLowerCase().startsWith("csv ") || lastSpace <= 3) {
+			return "ERROR: Invalid import command. 'help import' for more info.";
+		}
+		String file = arguments.substring(4, lastSpace).trim();
+		String cellName = arguments.substring(lastSpace + 1);
+		long key = SpreadsheetLocation.parse(cellName, 0, cellName.length());
+		if (key == SpreadsheetLocation.INVALID || !inBounds(key)) {
+			return "ERROR: Invalid cell name. 'help import' for more info.";
+		}
+		int startRow = SpreadsheetLocation.unpackRow(key);
+		int startCol = SpreadsheetLocation.unpackCol(key);
+
+		ArrayList<Cell[]> lines;
+		try {
+			// Parsed on the recalculation threads, or the common pool like parallel sorts
+			lines = CsvImporter.read(Paths.get(file), recalculationPool != null ? recalculationPool : ForkJoinPool.commonPool());
+		} catch (IOException | RuntimeException e) {
+			return "ERROR: Could not import " + file + ": " + e.getMessage();
+		}
+		int width = 0;
+		for (Cell[] line : lines) {
+			width = Math.max(width, line.length);
+		}
+		if ((long) startRow + lines.size() > getRows() || (long) startCol + width > getCols()) {
+			return "ERROR: " + file + " has " + lines.size() + " lines of up to " + width
+					+ " fields, which don't fit on the spreadsheet from " + cellName.toUpperCase();
+		}
+
+		long cellCount = 0;
+		for (int i = 0; i < lines.size(); i++) {
+			Cell[] line = lines.get(i);
+			int row = startRow + i;
+			for (int j = 0; j < line.length; j++) {
+				int col = startCol + j;
+				if (line[j] != null) {
+					storeCell(line[j], row, col);
+					cellCount++;
+				} else if (sheet.getType(row, col) != CellStorage.EMPTY) {
+					// Empty fields empty their cell, so the range matches the file
+					storeCell(EmptyCell.EMPTY, row, col);
+				}
 			}
 		}
-		return toString();
+		recalculate();
+		// The journal takes a checkpoint instead of depending on the imported file
+		checkpointRequested = true;
+		return "Imported " + cellCount + " cells from " + file;
+	}
+
+	// Export command handler, like "export csv data.csv" or "export csv data.csv A1-C5".
+	// Returns message saying how many rows were exported, or an error
+	public String commandExport(String command) {
+		String arguments = command.substring(6).trim();
+		if (!arguments.toLowerCase().startsWith("csv ")) {
+			return "ERROR: Invalid export command. 'help export' for more info.";
+		}
+		String file = arguments.substring(4).trim();
+		long[] corners = null;
+		int lastSpace = file.lastIndexOf(' ');
+		if (lastSpace != -1) {
+			corners = parseDisplayRange(file.substring(lastSpace + 1));
+			if (corners != null) {
+				file = file.substring(0, lastSpace).trim();
+			}
+		}
+		if (corners == null) {
+			corners = getUsedRange();
+		}
+		if (file.equals("")) {
+			return "ERROR: Invalid export command. 'help export' for more info.";
+		}
+		int startRow = SpreadsheetLocation.unpackRow(corners[0]);
+		int endRow = SpreadsheetLocation.unpackRow(corners[1]);
+		try {
+			CsvExporter.write(this, Paths.get(file), startRow, SpreadsheetLocation.unpackCol(corners[0]),
+					endRow, SpreadsheetLocation.unpackCol(corners[1]));
+		} catch (IOException | RuntimeException e) {
+			return "ERROR: Could not export " + file + ": " + e.getMessage();
+		}
+		return "Exported " + Math.max(0, endRow - startRow + 1) + " rows to " + file;
+	}
+
+	// Returns corners of the range from A1 to the last row and last column with a non-empty cell.
+	// The second corner is above and left of A1 if every cell is empty
+	private long[] getUsedRange() {
+		int lastRow = -1;
+		int lastCol = -1;
+		for (int row = 0; row < getRows(); row++) {
+			for (int col = 0; col < getCols(); col++) {
+				if (sheet.getType(row, col) != CellStorage.EMPTY) {
+					lastRow = row;
+					lastCol = Math.max(lastCol, col);
+				}
+			}
+		}
+		return new long[]{SpreadsheetLocation.pack(0, 0), SpreadsheetLocation.pack(lastRow, lastCol)};
+	}
+
+	// Runs a recovered command without displaying anything
+	void replayCommand(String command) {
+		executeCommand(command);
+	}
+
+	// Sets what commands that change cells display
+	public void setOutputMode(OutputMode mode) {
+		outputMode = mode;
+	}
+
+	// Returns what commands that change cells display
+	public OutputMode getOutputMode() {
+		return outputMode;
+	}
+
+	// Sets number of threads used for recalculation. Recalculations of fewer than PARALLEL_THRESHOLD cells always use one
+	public void setRecalculationThreads(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Recalculation needs at least 1 thread");
+		}
+		if (recalculationPool != null) {
+			recalculationPool.shutdown();
+			recalculationPool = null;
+		}
+		recalculationThreads = threads;
+		if (threads > 1) {
+			recalculationPool = new ForkJoinPool(threads);
+		}
 	}
 
-	// Set cell given x/y location index
+	// Sets bytes of memory a sort may use for its keys before it sorts through temporary files instead
+	public void setSortMemoryBudget(long bytes) {
+		if (bytes < 1) {
+			throw new IllegalArgumentException("Sort memory budget must be at least 1 byte");
+		}
+		sortMemoryBudget = bytes;
+	}
+
+	// Returns bytes of memory a sort may use for its keys
+	public long getSortMemoryBudget() {
+		return sortMemoryBudget;
+	}
+
+	// Returns number of threads used for recalculation
+	public int getRecalculationThreads() {
+		return recalculationThreads;
+	}
+
+	// Set cell given x/y location index and recalculate formulas that depend on it
 	public void setCell(Cell cell, int row, int col) {
-		sheet[row][col] = cell;
+		storeCell(cell, row, col);
+		recalculate();
+	}
+
+	// Set cell and update dependency graph without recalculating, so many cells can be changed before one recalculation
+	private void storeCell(Cell cell, int row, int col) {
+		sheet.set(row, col, cell);
+		cellStored(cell, row, col);
+	}
+
+	// Updates dependency graph and range index for a cell already written to storage
+	private void cellStored(Cell cell, int row, int col) {
+		long key = SpreadsheetLocation.pack(row, col);
+		if (cell instanceof FormulaCell) {
+			FormulaCell formula = (FormulaCell) cell;
+			dependencies.setPrecedents(key, formula.getPrecedents(), formula.getRanges());
+		} else {
+			dependencies.removePrecedents(key);
+			// Formulas are put in the range index once they're recalculated
+			rangeSumIndex.update(row, col, cell);
+		}
+		changedCells.add(key);
+		cellsChanged = true;
+	}
+
+	// Recalculates changed formulas and every formula that depends on a changed cell, in topological order
+	// Formulas in a circular reference are found here, when they are assigned, and put in an error state
+	private void recalculate() {
+		RecalculationPlan plan = dependencies.planRecalculation(changedCells);
+		changedCells.clear();
+		// Plan has every changed cell and every formula whose value may have changed
+		if (outputMode == OutputMode.DIFF) {
+			changedDisplayCells.addAll(plan.getOrder());
+		}
+		// Mark every affected formula dirty first so none of them is read while out of date,
+		// and drop the rendered lines of every row with a cell that may display differently
+		// Types are checked first, so storage doesn't build a cell for every changed value
+		for (long key : plan.getOrder()) {
+			int row = SpreadsheetLocation.unpackRow(key);
+			int col = SpreadsheetLocation.unpackCol(key);
+			if (rowLines != null && row >= rowCacheStartRow && row < rowCacheStartRow + rowLines.length) {
+				renderedRows.clear(row - rowCacheStartRow);
+			}
+			if (sheet.getType(row, col) == CellStorage.FORMULA) {
+				((FormulaCell) sheet.get(row, col)).markDirty();
+			}
+		}
+		// Formulas in a circular reference get their error first, so formulas reading them see it
+		for (long key : plan.getOrder()) {
+			if (plan.isCircular(key)) {
+				int row = SpreadsheetLocation.unpackRow(key);
+				int col = SpreadsheetLocation.unpackCol(key);
+				Cell cell = sheet.get(row, col);
+				((FormulaCell) cell).markCircular();
+				rangeSumIndex.update(row, col, cell);
+			}
+		}
+		if (recalculationPool != null && plan.size() >= PARALLEL_THRESHOLD) {
+			recalculateInParallel(plan);
+			return;
+		}
+		// Formulas already calculated by a formula read earlier in the order are not calculated again
+		for (long key : plan.getOrder()) {
+			int row = SpreadsheetLocation.unpackRow(key);
+			int col = SpreadsheetLocation.unpackCol(key);
+			if (sheet.getType(row, col) != CellStorage.FORMULA) {
+				continue;
+			}
+			Cell cell = sheet.get(row, col);
+			if (!plan.isCircular(key)) {
+				if (((FormulaCell) cell).isDirty()) {
+					((FormulaCell) cell).recalculate();
+				}
+				rangeSumIndex.update(row, col, cell);
+			}
+		}
+	}
+
+	// Recalculates plan one dependency level at a time. Formulas in a level don't read each other,
+	// so each level is split across the pool's threads, and the next level starts once it's done
+	private void recalculateInParallel(RecalculationPlan plan) {
+		for (ArrayList<Long> level : dependencies.getLevels(plan)) {
+			ArrayList<FormulaCell> formulas = new ArrayList<>();
+			for (long key : level) {
+				Cell cell = sheet.get(SpreadsheetLocation.unpackRow(key), SpreadsheetLocation.unpackCol(key));
+				if (cell instanceof FormulaCell) {
+					formulas.add((FormulaCell) cell);
+				}
+			}
+			recalculationPool.invoke(new RecalculationTask(formulas, 0, formulas.size()));
+			// Later levels may sum these formulas, so the range index is updated before they start
+			for (long key : level) {
+				int row = SpreadsheetLocation.unpackRow(key);
+				int col = SpreadsheetLocation.unpackCol(key);
+				rangeSumIndex.update(row, col, sheet.get(row, col));
+			}
+		}
 	}
 
 	// Overload to accept SpreadSheetLocation
@@ -72,10 +474,86 @@ public class Spreadsheet implements Grid
 	@Override
 	public String processCommand(String command)
 	{
+		StringBuilder response = new StringBuilder();
+		try {
+			processCommand(command, response);
+		} catch (IOException e) {
+			// StringBuilder never throws
+			throw new AssertionError("An unknown error occurred");
+		}
+		return response.toString();
+	}
+
+	// Processes raw command input and writes what it displays to out. The grid is streamed
+	// row by row instead of being built as one String
+	public void processCommand(String command, Appendable out) throws IOException {
+		String message = executeCommand(command);
+		// Commands that changed cells are journaled before anything is displayed
+		if (journal != null && cellsChanged) {
+			try {
+				journal.append(command.trim());
+				if (journal.needsCheckpoint() || checkpointRequested) {
+					journal.checkpoint(this);
+				}
+			} catch (IOException e) {
+				message = "ERROR: Could not write journal: " + e.getMessage();
+			}
+		}
+		writeResponse(message, out);
+	}
+
+	// Writes what a command displays to out: its message, or if it returned null, the history, cells or changes
+	// the command asked for, in the current output mode
+	private void writeResponse(String message, Appendable out) throws IOException {
+		if (message != null) {
+			out.append(message);
+		} else if (historyRequested) {
+			history.write(out);
+		} else if (printRequested || outputMode == OutputMode.FULL) {
+			writeDisplay(out);
+		} else if (outputMode == OutputMode.DIFF) {
+			writeChanges(out);
+		} else {
+			out.append("OK");
+		}
+	}
+
+	// Returns what a command displays, for the public handlers called on their own instead of through processCommand
+	private String responseText(String message) {
+		if (message != null) {
+			return message;
+		}
+		StringBuilder response = new StringBuilder();
+		try {
+			writeResponse(null, response);
+		} catch (IOException e) {
+			// StringBuilder never throws
+			throw new AssertionError("An unknown error occurred");
+		}
+		return response.toString();
+	}
+
+	// Resets what the previous command asked to display and changed, before the next command runs
+	private void beginCommand() {
+		displayStart = viewportStart;
+		displayEnd = viewportEnd;
+		printRequested = false;
+		historyRequested = false;
+		changedDisplayCells.clear();
+		clearedAll = false;
+		cellsChanged = false;
+		checkpointRequested = false;
+	}
+
+	// Runs command and returns message to display, or null if the cells from displayStart to displayEnd should be displayed
+	// The execute methods return null for commands that display the grid, so the caller decides how it's written
+	private String executeCommand(String command)
+	{
+		beginCommand();
 
 		// Don't process history commands into history
 		if (command.toLowerCase().startsWith("history")) {
-			return commandHistory(command.trim());
+			return executeHistory(command.trim());
 		}
 		addToHistory(command);
 
@@ -94,68 +572,202 @@ public class Spreadsheet implements Grid
 			return commandHelp(command);
 		}
 		if (command.toLowerCase().startsWith("clear")) {
-			return commandClear(command);
+			return executeClear(command);
 		}
 		if (command.toLowerCase().startsWith("print")) {
-			return toString();
+			return executePrint(command);
+		}
+		if (command.toLowerCase().startsWith("viewport")) {
+			return executeViewport(command);
+		}
+		if (command.toLowerCase().startsWith("output")) {
+			return commandOutput(command);
+		}
+		if (command.toLowerCase().startsWith("save ")) {
+			return commandSave(command);
+		}
+		if (command.toLowerCase().startsWith("load ")) {
+			return commandLoad(command);
+		}
+		if (command.toLowerCase().startsWith("import ")) {
+			return commandImport(command);
+		}
+		if (command.toLowerCase().startsWith("export ")) {
+			return commandExport(command);
+		}
+		if (command.toLowerCase().startsWith("sort rows")) {
+			return executeSortRows(command);
 		}
 		if (command.toLowerCase().startsWith("sort")) {
 			if (command.toLowerCase().charAt(4) == 'a') {
-				return commandSort(command, true);
+				return executeSort(command, true);
 			} else if (command.toLowerCase().charAt(4) == 'd') {
-				return commandSort(command, false);
+				return executeSort(command, false);
 			} else {
 				return "ERROR: invalid sort command";
 			}
 		}
 		// Process cell assignment commands
-		return processCellAssignment(command);
+		return executeAssignment(command);
 
 	}
 
-	// Add command to history and remove if too long
-	public void addToHistory(String command) {
-		history.add(0, command);
-		if (historyLength < history.size()) {
-			history.remove(history.size() - 1);
+	// Print command handler. Returns the viewport or given range, or an error
+	public String commandPrint(String command) {
+		beginCommand();
+		return responseText(executePrint(command));
+	}
+
+	// Runs print command. Returns null so the viewport or given range is displayed, or an error
+	private String executePrint(String command) {
+		printRequested = true;
+		String arguments = command.substring(5).trim();
+		if (arguments.equals("")) {
+			return null;
+		}
+		long[] corners = parseDisplayRange(arguments);
+		if (corners == null) {
+			return "ERROR: Invalid range. 'help print' for more info.";
 		}
+		displayStart = corners[0];
+		displayEnd = corners[1];
+		return null;
 	}
 
-	// Code dedicated to processing a cell assignment
-	public String processCellAssignment(String command) {
-		command = command.trim();
+	// Viewport command handler. Returns the new viewport, or an error
+	public String commandViewport(String command) {
+		beginCommand();
+		return responseText(executeViewport(command));
+	}
+
+	// Runs viewport command. Returns null so the new viewport is displayed, or an error
+	private String executeViewport(String command) {
+		String arguments = command.substring(8).trim();
+		if (arguments.equals("")) {
+			resetViewport();
+		} else {
+			long[] corners = parseDisplayRange(arguments);
+			if (corners == null) {
+				return "ERROR: Invalid range. 'help viewport' for more info.";
+			}
+			viewportStart = corners[0];
+			viewportEnd = corners[1];
+		}
+		displayStart = viewportStart;
+		displayEnd = viewportEnd;
+		changedDisplayCells.clear();
+		clearedAll = false;
+		return null;
+	}
 
-		// Try to resolve cell name - if fails, must be invalid
-		Cell cell;
-		SpreadsheetLocation cellLoc;
+	// Output command handler
+	public String commandOutput(String command) {
+		String mode = command.substring(6).trim();
 		try {
-			// Skip substring if command is not long enough. SpreadsheetLocation fails if invalid cell name
-			if (command.length() <= 2) {
-				cellLoc = new SpreadsheetLocation(command);
-			} else {
-				cellLoc = new SpreadsheetLocation(command.substring(0, 3).trim());
+			outputMode = OutputMode.valueOf(mode.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			return "ERROR: Invalid output mode. 'help output' for more info.";
+		}
+		return "Output mode is " + mode.toLowerCase();
+	}
+
+	// Writes the cells the current command changed, one per line like "A1 = 5.0", in row then column order
+	private void writeChanges(Appendable out) throws IOException {
+		if (clearedAll) {
+			out.append("Cleared all cells");
+			return;
+		}
+		long[] keys = new long[changedDisplayCells.size()];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = changedDisplayCells.get(i);
+		}
+		Arrays.sort(keys);
+		StringBuilder line = renderBuffer;
+		for (int i = 0; i < keys.length; i++) {
+			// A cell can be changed more than once by a command
+			if (i > 0 && keys[i] == keys[i - 1]) {
+				continue;
 			}
-			// Fails if cell location doesn't exist on spreadsheet
-			cell = getCell(cellLoc);
+			int row = SpreadsheetLocation.unpackRow(keys[i]);
+			int col = SpreadsheetLocation.unpackCol(keys[i]);
+			line.setLength(0);
+			if (i > 0) {
+				line.append('\n');
+			}
+			line.append(SpreadsheetLocation.columnName(col)).append(row + 1).append(" =");
+			String text = sheet.get(row, col).abbreviatedCellText().trim();
+			if (!text.equals("")) {
+				line.append(' ').append(text);
+			}
+			out.append(line);
+		}
+	}
 
-		} catch (Exception e) {
+	// Makes the viewport the entire spreadsheet
+	private void resetViewport() {
+		viewportStart = SpreadsheetLocation.pack(0, 0);
+		viewportEnd = SpreadsheetLocation.pack(getRows() - 1, getCols() - 1);
+	}
+
+	// Parses range of cells to display, or returns null if it isn't a range of cells on the spreadsheet
+	// with the first corner above and left of the second
+	private long[] parseDisplayRange(String cellRange) {
+		long[] corners;
+		try {
+			corners = parseRange(cellRange);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		if (!inBounds(corners[0]) || !inBounds(corners[1])
+				|| SpreadsheetLocation.unpackRow(corners[0]) > SpreadsheetLocation.unpackRow(corners[1])
+				|| SpreadsheetLocation.unpackCol(corners[0]) > SpreadsheetLocation.unpackCol(corners[1])) {
+			return null;
+		}
+		return corners;
+	}
+
+	// Add command to history, evicting the oldest command if history is full
+	public void addToHistory(String command) {
+		if (history != null) {
+			history.add(command);
+		}
+	}
+
+	// Code dedicated to processing a cell assignment. Returns what the command displays: the spreadsheet,
+	// the cell's text if the command only names a cell, or an error
+	public String processCellAssignment(String command) {
+		beginCommand();
+		return responseText(executeAssignment(command));
+	}
+
+	// Runs cell assignment. Returns null so the spreadsheet is displayed, or the cell's text or an error
+	private String executeAssignment(String command) {
+		command = command.trim();
+
+		// Cell name is the letters and digits at the start of the command, like "A1" or "AB120"
+		int nameEnd = 0;
+		while (nameEnd < command.length() && Character.isLetterOrDigit(command.charAt(nameEnd))) {
+			nameEnd++;
+		}
+		long key = SpreadsheetLocation.parse(command, 0, nameEnd);
+		// Fails if cell name is invalid or the cell doesn't exist on spreadsheet
+		if (key == SpreadsheetLocation.INVALID || !inBounds(key)) {
 			return "ERROR: Invalid command or invalid cell name.";
 		}
+		int row = SpreadsheetLocation.unpackRow(key);
+		int col = SpreadsheetLocation.unpackCol(key);
 
 		// If cell is the only thing in the command, print cell text
-		if (command.length() <= 3) {
-			// Skip loop execution if equals is at index 2, so A4="hi" won't print out cell but assign properly
-			if (command.length() == 2 || command.charAt(2) != '=') {
-				return cell.fullCellText();
-			}
+		String rest = command.substring(nameEnd).trim();
+		if (rest.equals("")) {
+			return sheet.get(row, col).fullCellText();
 		}
 
-		// Split at = sign to try to get assignment value
-		String[] splitCommand = command.split("=", 2);
-		if (splitCommand.length != 2) {
+		// Rest must be = and the assignment value
+		if (!rest.startsWith("=")) {
 			return "ERROR: Invalid command."; // No equals sign exists
 		}
-		String assignStatement = splitCommand[1].trim();
+		String assignStatement = rest.substring(1).trim();
 		Cell newCell;
 
 		// Throw error if assignment expression is invalid
@@ -186,12 +798,18 @@ public class Spreadsheet implements Grid
 		} catch (Exception e) {
 			return "ERROR: assignment expression is invalid: " + e;
 		}
-		setCell(newCell, cellLoc);
-		return toString();
+		setCell(newCell, row, col);
+		return null;
 	}
 
 	// Process base history command
 	public String commandHistory(String command) {
+		beginCommand();
+		return responseText(executeHistory(command));
+	}
+
+	// Runs history command. Returns null if the history is displayed, or a message
+	private String executeHistory(String command) {
 		// Get part after "history"
 		String arguments = command.substring(command.indexOf("history") + 7).trim();
 
@@ -202,7 +820,7 @@ public class Spreadsheet implements Grid
 
 		// Process display command
 		if (arguments.startsWith("display")) {
-			return commandHistoryDisplay(arguments);
+			return executeHistoryDisplay(arguments);
 		}
 
 		// Process clear command
@@ -221,7 +839,7 @@ public class Spreadsheet implements Grid
 	// Process History Start command
 	public String commandHistoryStart(String arguments) {
 		// Verify history isn't already started
-		if (historyLength != -1) {
+		if (history != null) {
 			return "ERROR: History is already started. Stop with 'history stop' first";
 		}
 		// Get part after "start"
@@ -230,7 +848,7 @@ public class Spreadsheet implements Grid
 
 			// Verify valid history length and assign if valid
 			if (tempHistoryLength >= 1) {
-				this.historyLength = tempHistoryLength;
+				history = new CommandHistory(tempHistoryLength);
 				return "";
 			} else {
 				return "ERROR: history start needs a valid history number";
@@ -241,64 +859,210 @@ public class Spreadsheet implements Grid
 		}
 	}
 
-	// Process History Display command
+	// Process History Display command. Returns the history, newest first
 	public String commandHistoryDisplay(String arguments) {
-		String fullHistory = "";
-		for (String loggedCommand : history) {
-			fullHistory += loggedCommand + '\n';
+		beginCommand();
+		return responseText(executeHistoryDisplay(arguments));
+	}
+
+	// Runs history display command. Returns null so the history is streamed to the output
+	private String executeHistoryDisplay(String arguments) {
+		if (history == null) {
+			return "";
 		}
-		return fullHistory;
+		historyRequested = true;
+		return null;
 	}
 
 	// Process History Clear command
 	public String commandHistoryClear(String arguments) {
 		// Get part after "clear"
 		int clearCount = Integer.parseInt(arguments.substring(arguments.indexOf("clear") + 5).trim());
-		int historySize = history.size();
-		// Loop through clearCount elements at the end and remove them
-		// Do not let loop below 0
-		for (int i = historySize - 1; i >=  Math.max(historySize - clearCount,  0); i--) {
-			history.remove(i);
+		// Oldest commands are cleared first
+		if (history != null) {
+			history.clearOldest(clearCount);
 		}
 		return "";
 	}
 
 	// Process History Stop command
 	public String commandHistoryStop(String arguments) {
-		historyLength = -1;
-		history.clear();
+		history = null;
 		return "";
 	}
 
-	// Process sort commands, given if ascending
+	// Process sort commands, given if ascending. Returns the spreadsheet, or an error
 	public String commandSort(String command, boolean ascending) {
+		beginCommand();
+		return responseText(executeSort(command, ascending));
+	}
 
+	// Runs sort command. Returns null so the spreadsheet is displayed, or an error
+	private String executeSort(String command, boolean ascending) {
 		String arguments = command.substring(5).trim();
+		long[] corners = parseDisplayRange(arguments);
+		if (corners == null) {
+			return "ERROR: Invalid range. 'help sort' for more info.";
+		}
+		int startRow = SpreadsheetLocation.unpackRow(corners[0]);
+		int startCol = SpreadsheetLocation.unpackCol(corners[0]);
+		int endRow = SpreadsheetLocation.unpackRow(corners[1]);
+		int endCol = SpreadsheetLocation.unpackCol(corners[1]);
+		int width = endCol - startCol + 1;
+		int count = (endRow - startRow + 1) * width;
+
+		// Sort keys are extracted once, then sorted in O(n log n) without moving any cells
+		if (count <= ExternalCellSorter.getRunLength(sortMemoryBudget, 1)) {
+			Cell[] cells = readSortKeys(startRow, startCol, width, null, 0, count)[0];
+			int[] order = new CellSorter(cells).sort(ascending);
+			// Assign cells back again in one pass. Cells that stay where they are aren't touched
+			for (int i = 0; i < count; i++) {
+				if (order[i] != i && cells[order[i]] != cells[i]) {
+					storeCell(cells[order[i]], startRow + i / width, startCol + i % width);
+				}
+			}
+			recalculate();
+			return null;
+		}
+		int[] order;
+		try {
+			order = getSortOrder(startRow, startCol, width, null, new boolean[]{ascending}, count);
+		} catch (IOException e) {
+			return "ERROR: Sort failed: " + e.getMessage();
+		}
 
-		ArrayList<SpreadsheetLocation> cellsOrder = getCells(arguments.trim());
-		ArrayList<Cell> cells = new ArrayList<>();
-		for (SpreadsheetLocation loc : cellsOrder) {
-			cells.add(getCell(loc));
-		}
-		// Selection sort - find minimum, remove, add to beginning, rinse and repeat ignoring the last first cell added
-		for (int i = 0; i < cells.size(); i++) {
-			Cell extreme = cells.get(i);
-			for (int j = i; j < cells.size(); j++) {
-				if (ascending && compareCells(extreme, cells.get(j)) > 0) {
-					extreme = cells.get(j);
-				} else if (!ascending && compareCells(extreme, cells.get(j)) < 0) {
-					extreme = cells.get(j);
+		// Cells don't fit in memory either, so assign them back following each cycle of the permutation,
+		// holding one cell at a time. Cells replaced by the same cell aren't touched
+		BitSet placed = new BitSet(count);
+		for (int start = 0; start < count; start++) {
+			if (placed.get(start) || order[start] == start) {
+				continue;
+			}
+			Cell first = sheet.get(startRow + start / width, startCol + start % width);
+			// Each position in a cycle still holds the cell read for the position before it
+			Cell current = first;
+			int position = start;
+			while (order[position] != start) {
+				Cell next = sheet.get(startRow + order[position] / width, startCol + order[position] % width);
+				if (next != current) {
+					storeCell(next, startRow + position / width, startCol + position % width);
 				}
+				placed.set(position);
+				current = next;
+				position = order[position];
+			}
+			if (first != current) {
+				storeCell(first, startRow + position / width, startCol + position % width);
+			}
+			placed.set(position);
+		}
+		recalculate();
+		return null;
+	}
+
+	// Returns sorted order of the cells of a range in row order, starting at startRow, startCol and width cells wide,
+	// or of its rows compared by the cells in keyCols when given. Keys that don't fit in the sort memory budget
+	// are sorted in runs that are spilled to temporary files and merged
+	private int[] getSortOrder(int startRow, int startCol, int width, int[] keyCols, boolean[] ascending, int count)
+			throws IOException {
+		int runLength = ExternalCellSorter.getRunLength(sortMemoryBudget, ascending.length);
+		if (count <= runLength) {
+			return new CellSorter(readSortKeys(startRow, startCol, width, keyCols, 0, count)).sort(ascending);
+		}
+		ExternalCellSorter sorter = new ExternalCellSorter(ascending);
+		try {
+			for (int first = 0; first < count; first += runLength) {
+				int length = Math.min(runLength, count - first);
+				sorter.addRun(readSortKeys(startRow, startCol, width, keyCols, first, length), first);
 			}
-			// Remove that cell
-			cells.remove(extreme);
-			// Add cell to front
-			cells.add(i, extreme);
+			return sorter.merge(count);
+		} finally {
+			sorter.close();
+		}
+	}
 
+	// Returns key cells of the cells or rows being sorted from first to first + count - 1, one array per key column
+	private Cell[][] readSortKeys(int startRow, int startCol, int width, int[] keyCols, int first, int count) {
+		if (keyCols == null) {
+			Cell[] cells = new Cell[count];
+			for (int i = 0; i < count; i++) {
+				cells[i] = sheet.get(startRow + (first + i) / width, startCol + (first + i) % width);
+			}
+			return new Cell[][]{cells};
 		}
-		// Assign cells back again
-		setCells(arguments, cells);
-		return toString();
+		Cell[][] keyColumns = new Cell[keyCols.length][count];
+		for (int key = 0; key < keyCols.length; key++) {
+			for (int i = 0; i < count; i++) {
+				keyColumns[key][i] = sheet.get(startRow + first + i, keyCols[key]);
+			}
+		}
+		return keyColumns;
+	}
+
+	// Process sort rows command, like "sort rows A2-D50 by B desc, A". Rows keep their cells together.
+	// Returns the spreadsheet, or an error
+	public String commandSortRows(String command) {
+		beginCommand();
+		return responseText(executeSortRows(command));
+	}
+
+	// Runs sort rows command. Returns null so the spreadsheet is displayed, or an error
+	private String executeSortRows(String command) {
+		String arguments = command.substring(9).trim();
+		int by = arguments.toLowerCase().indexOf(" by ");
+		if (by == -1) {
+			return "ERROR: Invalid sort command. 'help sort' for more info.";
+		}
+		long[] corners = parseDisplayRange(arguments.substring(0, by));
+		if (corners == null) {
+			return "ERROR: Invalid range. 'help sort' for more info.";
+		}
+		int startRow = SpreadsheetLocation.unpackRow(corners[0]);
+		int startCol = SpreadsheetLocation.unpackCol(corners[0]);
+		int endRow = SpreadsheetLocation.unpackRow(corners[1]);
+		int endCol = SpreadsheetLocation.unpackCol(corners[1]);
+
+		// Key columns, each "<col>", "<col> asc" or "<col> desc"
+		String[] keys = arguments.substring(by + 4).split(",");
+		int[] keyCols = new int[keys.length];
+		boolean[] ascending = new boolean[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			String[] parts = keys[i].trim().split(" +");
+			keyCols[i] = SpreadsheetLocation.parseColumn(parts[0], 0, parts[0].length());
+			if (keyCols[i] < startCol || keyCols[i] > endCol || parts.length > 2) {
+				return "ERROR: Sort columns must be columns of the range. 'help sort' for more info.";
+			}
+			ascending[i] = true;
+			if (parts.length == 2) {
+				if (parts[1].equalsIgnoreCase("desc")) {
+					ascending[i] = false;
+				} else if (!parts[1].equalsIgnoreCase("asc")) {
+					return "ERROR: Sort direction must be asc or desc. 'help sort' for more info.";
+				}
+			}
+		}
+
+		// Order of the rows is found once from the key columns
+		int[] order;
+		try {
+			order = getSortOrder(startRow, startCol, endCol - startCol + 1, keyCols, ascending, endRow - startRow + 1);
+		} catch (IOException e) {
+			return "ERROR: Sort failed: " + e.getMessage();
+		}
+
+		// Storage moves whole rows, then cells of rows that moved are updated in the dependency graph and range index
+		sheet.permuteRows(startRow, startCol, endRow, endCol, order);
+		for (int i = 0; i < order.length; i++) {
+			if (order[i] == i) {
+				continue;
+			}
+			int row = startRow + i;
+			for (int col = startCol; col <= endCol; col++) {
+				cellStored(sheet.get(row, col), row, col);
+			}
+		}
+		recalculate();
+		return null;
 	}
 
 	// Compare 2 cells after verifying type
@@ -329,15 +1093,9 @@ public class Spreadsheet implements Grid
 	// Get spreadsheet locations from cell range
 	public ArrayList<SpreadsheetLocation> getCells(String cellRange) {
 		ArrayList<SpreadsheetLocation> cells = new ArrayList<>();
-		String[] corners = cellRange.split("-");
-		if ( !(corners.length == 2) ) {
-			throw new IllegalArgumentException("Invalid cell range");
-		}
-
-		SpreadsheetLocation corner1 = new SpreadsheetLocation(corners[0]);
-		SpreadsheetLocation corner2 = new SpreadsheetLocation(corners[1]);
-		for (int row = corner1.getRow(); row <= corner2.getRow(); row++) {
-			for (int col = corner1.getCol(); col <= corner2.getCol(); col++) {
+		long[] corners = parseRange(cellRange);
+		for (int row = SpreadsheetLocation.unpackRow(corners[0]); row <= SpreadsheetLocation.unpackRow(corners[1]); row++) {
+			for (int col = SpreadsheetLocation.unpackCol(corners[0]); col <= SpreadsheetLocation.unpackCol(corners[1]); col++) {
 				SpreadsheetLocation loc = new SpreadsheetLocation(row, col);
 				cells.add(loc);
 			}
@@ -347,42 +1105,78 @@ public class Spreadsheet implements Grid
 
 	// Set cells given arraylist and cellrange
 	public void setCells(String cellRange, ArrayList<Cell> cells) {
-		String[] corners = cellRange.split("-");
-		if ( !(corners.length == 2) ) {
-			throw new IllegalArgumentException("Invalid cell range");
-		}
-
-		SpreadsheetLocation corner1 = new SpreadsheetLocation(corners[0]);
-		SpreadsheetLocation corner2 = new SpreadsheetLocation(corners[1]);
+		long[] corners = parseRange(cellRange);
 		int cellListIdx = 0;
-		for (int row = corner1.getRow(); row <= corner2.getRow(); row++) {
-			for (int col = corner1.getCol(); col <= corner2.getCol(); col++) {
-				SpreadsheetLocation loc = new SpreadsheetLocation(row, col);
-				setCell(cells.get(cellListIdx), loc.getRow(), loc.getCol());
+		for (int row = SpreadsheetLocation.unpackRow(corners[0]); row <= SpreadsheetLocation.unpackRow(corners[1]); row++) {
+			for (int col = SpreadsheetLocation.unpackCol(corners[0]); col <= SpreadsheetLocation.unpackCol(corners[1]); col++) {
+				storeCell(cells.get(cellListIdx), row, col);
 				cellListIdx++;
 			}
 		}
+		recalculate();
+	}
+
+	// Parses cell range like "A1-C5" into packed keys of its 2 corners. Throws IllegalArgumentException if invalid
+	public long[] parseRange(String cellRange) {
+		cellRange = cellRange.trim();
+		int dash = cellRange.indexOf('-');
+		if (dash == -1) {
+			throw new IllegalArgumentException("Invalid cell range");
+		}
+		long corner1 = SpreadsheetLocation.parse(cellRange, 0, dash);
+		long corner2 = SpreadsheetLocation.parse(cellRange, dash + 1, cellRange.length());
+		if (corner1 == SpreadsheetLocation.INVALID || corner2 == SpreadsheetLocation.INVALID) {
+			throw new IllegalArgumentException("Invalid cell range");
+		}
+		return new long[]{corner1, corner2};
+	}
+
+	// Returns if packed key is a cell on the spreadsheet
+	public boolean inBounds(long key) {
+		int row = SpreadsheetLocation.unpackRow(key);
+		int col = SpreadsheetLocation.unpackCol(key);
+		return row >= 0 && row < getRows() && col >= 0 && col < getCols();
+	}
+
+	// Returns per-column index used to sum long ranges
+	public RangeSumIndex getRangeSumIndex() {
+		return rangeSumIndex;
 	}
 
 	// Get number of rows
 	@Override
 	public int getRows()
 	{
-		return sheet.length;
+		return sheet.getRows();
 	}
 
 	// Get number of columns
 	@Override
 	public int getCols()
 	{
-		return sheet[0].length;
+		return sheet.getCols();
 	}
 
 	// Return cell at location
 	@Override
 	public Cell getCell(Location loc)
 	{
-		return sheet[loc.getRow()][loc.getCol()];
+		return sheet.get(loc.getRow(), loc.getCol());
+	}
+
+	// Overload to get cell by index without creating a location
+	public Cell getCell(int row, int col) {
+		return sheet.get(row, col);
+	}
+
+	// Returns type of cell at indexes, one of the CellStorage types, without building the cell
+	public byte getCellType(int row, int col) {
+		return sheet.getType(row, col);
+	}
+
+	// Returns numerical value of a value or percent cell at indexes without building the cell
+	public double getNumber(int row, int col) {
+		return sheet.getNumber(row, col);
 	}
 
 	// Calls toString() for compatibility
@@ -428,17 +1222,28 @@ public class Spreadsheet implements Grid
 
 	}
 
-	// Clear command handler
+	// Clear command handler. Returns the spreadsheet, or an error
 	public String commandClear(String command) {
+		beginCommand();
+		return responseText(executeClear(command));
+	}
+
+	// Runs clear command. Returns null so the spreadsheet is displayed, or an error
+	private String executeClear(String command) {
 		String[] helpArgument = command.split(" ",2);
 		// If no arguments, clear entire spreadsheet. Else, clear only that cell
 		if (helpArgument.length == 1) {
-			return clearFullSpreadsheet();
+			clearCells();
+			return null;
 		} else {
 			try {
-				SpreadsheetLocation clearLoc = new SpreadsheetLocation(helpArgument[1].trim());
-				sheet[clearLoc.getRow()][clearLoc.getCol()] = new EmptyCell();
-				return toString();
+				String cellName = helpArgument[1].trim();
+				long key = SpreadsheetLocation.parse(cellName, 0, cellName.length());
+				if (key == SpreadsheetLocation.INVALID || !inBounds(key)) {
+					throw new IllegalArgumentException("Invalid cell name");
+				}
+				setCell(EmptyCell.EMPTY, SpreadsheetLocation.unpackRow(key), SpreadsheetLocation.unpackCol(key));
+				return null;
 			} catch (Exception e) {
 				return "Invalid syntax for clear command. 'help clear' for more info.";
 			}
@@ -447,26 +1252,97 @@ public class Spreadsheet implements Grid
 
 	// Returns nice view of spreadsheet values
 	public String toString() {
-		String formattedTable = "   |";
+		StringBuilder grid = new StringBuilder();
+		try {
+			writeGrid(grid);
+		} catch (IOException e) {
+			// StringBuilder never throws
+			throw new AssertionError("An unknown error occurred");
+		}
+		return grid.toString();
+	}
+
+	// Writes nice view of all spreadsheet values to out
+	public void writeGrid(Appendable out) throws IOException {
+		writeGrid(out, 0, 0, getRows() - 1, getCols() - 1);
+	}
+
+	// Writes the cells the current command displays to out
+	private void writeDisplay(Appendable out) throws IOException {
+		writeGrid(out, SpreadsheetLocation.unpackRow(displayStart), SpreadsheetLocation.unpackCol(displayStart),
+				SpreadsheetLocation.unpackRow(displayEnd), SpreadsheetLocation.unpackCol(displayEnd));
+	}
+
+	// Writes nice view of the cells from startRow, startCol to endRow, endCol to out, labelled with their real
+	// row numbers and column letters. Only those cells are read. Each row is put together in a reused buffer and
+	// written on its own, so printing is linear in the size of the range and never holds all of it in memory
+	public void writeGrid(Appendable out, int startRow, int startCol, int endRow, int endCol) throws IOException {
+		// Row numbers are at least 3 wide, wider if the last row's number doesn't fit
+		int labelWidth = Math.max(3, Integer.toString(endRow + 1).length());
+		StringBuilder line = renderBuffer;
+		line.setLength(0);
+		appendPadded(line, "", labelWidth);
+		line.append('|');
 		// Make table header
-		for (int i = 'A'; i <= 'L'; i++) {
-			formattedTable +=  (char) i + "         |";
+		for (int col = startCol; col <= endCol; col++) {
+			appendPadded(line, SpreadsheetLocation.columnName(col), 10);
+			line.append('|');
+		}
+		out.append(line);
+		// Lines are cached for one range at a time, so a different range starts over
+		boolean cached = endRow - startRow < MAX_CACHED_ROWS;
+		if (!cached) {
+			rowLines = null;
+		} else if (rowLines == null || startRow != rowCacheStartRow || endRow - startRow + 1 != rowLines.length
+				|| startCol != rowCacheStartCol || endCol != rowCacheEndCol) {
+			rowLines = new String[endRow - startRow + 1];
+			renderedRows.clear();
+			rowCacheStartRow = startRow;
+			rowCacheStartCol = startCol;
+			rowCacheEndCol = endCol;
 		}
 		// Print rows
-		for (int i = 1; i <= sheet.length; i++) {
-			// Get # of spaces by String length of number
-			String spaces = "";
-			for (int s = 0; s < 3 - ("" + i).length(); s++ ) {
-				spaces += " ";
-			}
-			formattedTable += "\n" + i + spaces + "|";
-			// Print cells
-			for (Cell cell : sheet[i - 1]) {
-				formattedTable += cell.abbreviatedCellText() + "|";
+		for (int row = startRow; row <= endRow; row++) {
+			line.setLength(0);
+			line.append('\n');
+			appendPadded(line, Integer.toString(row + 1), labelWidth);
+			out.append(line);
+			if (cached) {
+				out.append(getRowLine(row, startCol, endCol));
+			} else {
+				out.append(renderRow(row, startCol, endCol));
 			}
 		}
+		out.append('\n');
+	}
+
+	// Returns rendered cells of row from startCol to endCol, from the row cache if the row hasn't changed
+	private String getRowLine(int row, int startCol, int endCol) {
+		int index = row - rowCacheStartRow;
+		if (!renderedRows.get(index)) {
+			rowLines[index] = renderRow(row, startCol, endCol).toString();
+			renderedRows.set(index);
+		}
+		return rowLines[index];
+	}
 
-		return formattedTable + '\n';
+	// Renders cells of row from startCol to endCol into the render buffer, and returns it
+	private StringBuilder renderRow(int row, int startCol, int endCol) {
+		StringBuilder line = renderBuffer;
+		line.setLength(0);
+		line.append('|');
+		for (int col = startCol; col <= endCol; col++) {
+			line.append(sheet.get(row, col).abbreviatedCellText()).append('|');
+		}
+		return line;
+	}
+
+	// Appends text to line followed by spaces to make it width long
+	private static void appendPadded(StringBuilder line, String text, int width) {
+		line.append(text);
+		for (int i = text.length(); i < width; i++) {
+			line.append(' ');
+		}
 	}
 
 }
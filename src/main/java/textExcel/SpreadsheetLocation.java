@@ -25,33 +25,94 @@ public class SpreadsheetLocation implements Location {
         return colIndex;
     }
 
-    // Returns location as raw cell name, like "B6"
+    // Returned by parse when text isn't a cell name
+    public static final long INVALID = -1L;
+
+    // Returns location as raw cell name, like "B6" or "AA10"
     public String toString() {
-        char colChar = (char) (colIndex + 'A');
-        int row = rowIndex + 1;
-        return "" + colChar + row;
+        return columnName(colIndex) + (rowIndex + 1);
     }
 
-    // Constructor: parses cellName (max one letter + number) and stores indexes
+    // Constructor: parses cellName (column letters then row number, like "B6" or "XFD1048576") and stores indexes
     public SpreadsheetLocation(String cellName)
     {
         // Trim to prevent spaces getting in the way
         cellName = cellName.trim();
+        long key = parse(cellName, 0, cellName.length());
+        if (key == INVALID) {
+            throw new IllegalArgumentException("Invalid cell name");
+        }
+        rowIndex = unpackRow(key);
+        colIndex = unpackCol(key);
+    }
 
-        // Parse string: one letter (col) then rest of string is number (row)
-        // Throw error when fails to parse
-        try {
-            char colChar = Character.toUpperCase(cellName.charAt(0));
-            // Verify is a letter
-            if (!(colChar >= (int) 'A' && colChar <= (int) 'Z')) {
-                throw new IllegalArgumentException("Invalid cell row");
+    // Parses the cell name in text from start (inclusive) to end (exclusive) into a packed key (see pack),
+    // or returns INVALID if it isn't one. Case insensitive. Allocates nothing, so formulas and commands can
+    // resolve references without creating locations or substrings
+    public static long parse(CharSequence text, int start, int end) {
+        int i = start;
+        while (i < end && i - start < 6 && isLetter(text.charAt(i))) {
+            i++;
+        }
+        int col = parseColumn(text, start, i);
+        if (col == -1) {
+            return INVALID;
+        }
+        // Rows are numbered from 1
+        int digitsStart = i;
+        long row = 0;
+        while (i < end) {
+            char digit = text.charAt(i);
+            if (digit < '0' || digit > '9') {
+                return INVALID;
             }
-            int row = Integer.parseInt(cellName.substring(1));
-            rowIndex = row - 1;
-            colIndex = colChar - 'A';
-        } catch(Exception e) {
-            throw new IllegalArgumentException("Invalid cell name");
+            row = row * 10 + (digit - '0');
+            if (row > Integer.MAX_VALUE) {
+                return INVALID;
+            }
+            i++;
+        }
+        if (i == digitsStart || row < 1) {
+            return INVALID;
+        }
+        return pack((int) row - 1, col);
+    }
+
+    // Parses the column letters in text from start (inclusive) to end (exclusive) into a column index,
+    // or returns -1 if they aren't 1 to 6 letters. Case insensitive
+    public static int parseColumn(CharSequence text, int start, int end) {
+        if (end <= start || end - start > 6) {
+            return -1;
+        }
+        // Columns are bijective base 26: A-Z are 0-25, AA is 26, up to 6 letters so the index fits in an int
+        int col = 0;
+        for (int i = start; i < end; i++) {
+            char letter = text.charAt(i);
+            if (!isLetter(letter)) {
+                return -1;
+            }
+            col = col * 26 + (Character.toUpperCase(letter) - 'A' + 1);
         }
+        return col - 1;
+    }
+
+    private static boolean isLetter(char letter) {
+        letter = Character.toUpperCase(letter);
+        return letter >= 'A' && letter <= 'Z';
+    }
+
+    // Returns letters of column index, like "A" for 0, "Z" for 25 and "AA" for 26
+    public static String columnName(int colIndex) {
+        // Fill the letters from the end, since the last letter is the lowest digit
+        char[] letters = new char[7];
+        int start = letters.length;
+        int col = colIndex + 1;
+        while (col > 0) {
+            col--;
+            letters[--start] = (char) ('A' + col % 26);
+            col /= 26;
+        }
+        return new String(letters, start, letters.length - start);
     }
 
     // Overloaded constructor: allow creation location directly by index instead
@@ -60,6 +121,21 @@ public class SpreadsheetLocation implements Location {
         this.colIndex = colIndex;
     }
 
+    // Packs row and column indexes into a single key, used to index cells in maps and sets
+    public static long pack(int rowIndex, int colIndex) {
+        return ((long) rowIndex << 32) | (colIndex & 0xFFFFFFFFL);
+    }
+
+    // Returns row index of a packed key
+    public static int unpackRow(long key) {
+        return (int) (key >> 32);
+    }
+
+    // Returns column index of a packed key
+    public static int unpackCol(long key) {
+        return (int) key;
+    }
+
     // Tests if 2 locations are equal. Good for ArrayList.contains()
     @Override
     public boolean equals(Object obj) {
@@ -73,4 +149,10 @@ public class SpreadsheetLocation implements Location {
         return rowIndex == loc.rowIndex && colIndex == loc.colIndex;
     }
 
+    // Hash code matching equals, so locations work as HashMap keys
+    @Override
+    public int hashCode() {
+        return Long.hashCode(pack(rowIndex, colIndex));
+    }
+
 }
@@ -0,0 +1,463 @@
+/*
+ * Binary snapshot of every cell of a spreadsheet, for save and load and for journal checkpoints.
+ * Cells are kept column by column as little-endian arrays, so loading reads them in bulk from a memory-mapped file
+ * and formulas come back with their calculated values instead of being replayed and recalculated
+ *
+ * Header: magic (int), version (short), codec (byte), unused (byte), rows (int), cols (int),
+ * journal sequence number (long, 0 if not a checkpoint), body length before compression (long).
+ * Body, deflated if the codec says so: one section per column with cells, made of
+ * its index (int), cell count (int), rows (int[]), tags (byte[]), numbers (double[]),
+ * then its string table: string count (int) and each string as its UTF-8 length (int) and bytes,
+ * in the order of the cells that have one
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+package textExcel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+public class SpreadsheetSnapshot {
+
+    private static final int MAGIC = 0x53535854; // "TXSS" in little-endian order
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 2 + 1 + 1 + 4 + 4 + 8 + 8;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Codecs of the body
+    private static final byte CODEC_NONE = 0;
+    private static final byte CODEC_DEFLATE = 1;
+
+    // Cell tags. Like ColumnarCellStorage, values whose entered text is what Double.toString or Long.toString
+    // gives back for their number only keep the number. Formulas keep their value, or the ordinal of their error
+    private static final byte TAG_DOUBLE_TEXT = 1;
+    private static final byte TAG_LONG_TEXT = 2;
+    private static final byte TAG_RAW_TEXT = 3;
+    private static final byte TAG_PERCENT = 4;
+    private static final byte TAG_TEXT = 5;
+    private static final byte TAG_FORMULA = 6;
+    private static final byte TAG_FORMULA_ERROR = 7;
+
+    private SpreadsheetSnapshot() {
+    }
+
+    // Writes every non-empty cell of sheet to path, deflating the body if compress. journalSequence is kept in the
+    // header for CommandJournal, 0 otherwise. Returns number of cells written.
+    // The snapshot is written to a temporary file next to path first, then moved over it, so a failed write
+    // leaves any file already at path as it was.
+    // Throws IOException if a cell isn't one of the spreadsheet's own cell types
+    public static long write(Spreadsheet sheet, Path path, boolean compress, long journalSequence) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        boolean moved = false;
+        try {
+            long cellCount = writeFile(sheet, temporary, compress, journalSequence);
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+            return cellCount;
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    // Writes snapshot of sheet to path, replacing what was there
+    private static long writeFile(Spreadsheet sheet, Path path, boolean compress, long journalSequence)
+            throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            file.position(HEADER_SIZE);
+            long cellCount;
+            Output out;
+            if (compress) {
+                Deflater deflater = new Deflater();
+                try {
+                    DeflaterOutputStream stream = new DeflaterOutputStream(Channels.newOutputStream(file), deflater,
+                            BUFFER_SIZE);
+                    out = new Output(Channels.newChannel(stream));
+                    cellCount = writeBody(sheet, out);
+                    out.flush();
+                    // Finished, not closed, so the file stays open for the header
+                    stream.finish();
+                    stream.flush();
+                } finally {
+                    deflater.end();
+                }
+            } else {
+                out = new Output(file);
+                cellCount = writeBody(sheet, out);
+                out.flush();
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putShort(VERSION);
+            header.put(compress ? CODEC_DEFLATE : CODEC_NONE);
+            header.put((byte) 0);
+            header.putInt(sheet.getRows());
+            header.putInt(sheet.getCols());
+            header.putLong(journalSequence);
+            header.putLong(out.written);
+            header.flip();
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += file.write(header, position);
+            }
+            file.force(true);
+            return cellCount;
+        }
+    }
+
+    // Empties sheet and loads every cell of the snapshot at path into it, with formulas keeping their saved values.
+    // Returns journal sequence number kept in the header.
+    // Throws IOException if the file isn't a snapshot of a spreadsheet the size of sheet, or is corrupt,
+    // in which case sheet is left as it was
+    public static long read(Spreadsheet sheet, Path path) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = file.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException(path + " is not a TextExcel snapshot");
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to map");
+            }
+            MappedByteBuffer mapped = file.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.getInt() != MAGIC || mapped.getShort() != VERSION) {
+                throw new IOException(path + " is not a TextExcel snapshot of this version");
+            }
+            byte codec = mapped.get();
+            mapped.get();
+            int rows = mapped.getInt();
+            int cols = mapped.getInt();
+            if (rows != sheet.getRows() || cols != sheet.getCols()) {
+                throw new IOException(path + " was saved from a " + rows + " x " + cols + " spreadsheet");
+            }
+            long journalSequence = mapped.getLong();
+            long bodyLength = mapped.getLong();
+
+            ByteBuffer body;
+            if (codec == CODEC_NONE) {
+                if (bodyLength != size - HEADER_SIZE) {
+                    throw new IOException(path + " is truncated");
+                }
+                body = mapped.slice().order(ByteOrder.LITTLE_ENDIAN);
+            } else if (codec == CODEC_DEFLATE) {
+                body = inflate(mapped, bodyLength, path);
+            } else {
+                throw new IOException(path + " uses an unknown codec");
+            }
+            // The whole body is decoded and checked before the spreadsheet is touched
+            ArrayList<Section> sections;
+            try {
+                sections = readBody(sheet, body);
+            } catch (RuntimeException e) {
+                // Bad lengths, indexes or formulas from a corrupt file
+                throw new IOException(path + " is corrupt", e);
+            }
+            load(sheet, sections);
+            return journalSequence;
+        }
+    }
+
+    // Writes the columns of sheet to out. Returns number of cells written
+    private static long writeBody(Spreadsheet sheet, Output out) throws IOException {
+        int rowCount = sheet.getRows();
+        int[] rows = new int[rowCount];
+        byte[] tags = new byte[rowCount];
+        double[] numbers = new double[rowCount];
+        ArrayList<String> strings = new ArrayList<>();
+        long cellCount = 0;
+        for (int col = 0; col < sheet.getCols(); col++) {
+            int count = 0;
+            strings.clear();
+            for (int row = 0; row < rowCount; row++) {
+                byte type = sheet.getCellType(row, col);
+                if (type == CellStorage.EMPTY) {
+                    continue;
+                }
+                rows[count] = row;
+                if (type == CellStorage.VALUE) {
+                    double number = sheet.getNumber(row, col);
+                    String text = sheet.getCell(row, col).fullCellText();
+                    numbers[count] = number;
+                    if (text.equals(Double.toString(number))) {
+                        tags[count] = TAG_DOUBLE_TEXT;
+                    } else if (number == (long) number && text.equals(Long.toString((long) number))) {
+                        tags[count] = TAG_LONG_TEXT;
+                    } else {
+                        tags[count] = TAG_RAW_TEXT;
+                        strings.add(text);
+                    }
+                } else if (type == CellStorage.PERCENT) {
+                    tags[count] = TAG_PERCENT;
+                    numbers[count] = ((PercentCell) sheet.getCell(row, col)).getPercentValue();
+                } else if (type == CellStorage.TEXT) {
+                    tags[count] = TAG_TEXT;
+                    numbers[count] = 0.0;
+                    strings.add(((TextCell) sheet.getCell(row, col)).getFullStringValue());
+                } else if (type == CellStorage.FORMULA) {
+                    FormulaCell formula = (FormulaCell) sheet.getCell(row, col);
+                    CellError error = formula.getError();
+                    if (error == CellError.NONE) {
+                        tags[count] = TAG_FORMULA;
+                        numbers[count] = formula.getDoubleValue();
+                    } else {
+                        tags[count] = TAG_FORMULA_ERROR;
+                        numbers[count] = error.ordinal();
+                    }
+                    strings.add(formula.fullCellText());
+                } else {
+                    throw new IOException("Cell " + new SpreadsheetLocation(row, col) + " can't be saved");
+                }
+                count++;
+            }
+            if (count == 0) {
+                continue;
+            }
+            cellCount += count;
+
+            out.reserve(8).putInt(col).putInt(count);
+            for (int i = 0; i < count; i++) {
+                out.reserve(4).putInt(rows[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                out.reserve(1).put(tags[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                out.reserve(8).putDouble(numbers[i]);
+            }
+            out.reserve(4).putInt(strings.size());
+            for (String string : strings) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                out.reserve(4).putInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+        return cellCount;
+    }
+
+    // Decodes the columns of body, checking every row, tag, string and formula, without changing sheet.
+    // Throws a RuntimeException if body is corrupt
+    private static ArrayList<Section> readBody(Spreadsheet sheet, ByteBuffer body) {
+        ArrayList<Section> sections = new ArrayList<>();
+        int rowCount = sheet.getRows();
+        int lastCol = -1;
+        while (body.hasRemaining()) {
+            int col = body.getInt();
+            int count = body.getInt();
+            // Columns are written in order, each with at least one cell
+            if (col <= lastCol || col >= sheet.getCols() || count < 1 || count > rowCount) {
+                throw new IllegalArgumentException("Invalid column");
+            }
+            lastCol = col;
+            Section section = new Section(col, count);
+            // Arrays are read in bulk through views of the body
+            body.asIntBuffer().get(section.rows);
+            body.position(body.position() + 4 * count);
+            body.get(section.tags);
+            body.asDoubleBuffer().get(section.numbers);
+            body.position(body.position() + 8 * count);
+            int stringCount = body.getInt();
+            if (stringCount > 0) {
+                section.entries = new Object[count];
+            }
+
+            int string = 0;
+            int lastRow = -1;
+            for (int i = 0; i < count; i++) {
+                if (section.rows[i] <= lastRow || section.rows[i] >= rowCount) {
+                    throw new IllegalArgumentException("Invalid row");
+                }
+                lastRow = section.rows[i];
+                switch (section.tags[i]) {
+                    case TAG_DOUBLE_TEXT:
+                    case TAG_LONG_TEXT:
+                    case TAG_PERCENT:
+                        break;
+                    case TAG_RAW_TEXT:
+                    case TAG_TEXT:
+                        section.entries[i] = readString(body, string++, stringCount);
+                        break;
+                    case TAG_FORMULA:
+                    case TAG_FORMULA_ERROR:
+                        // Built now, so a formula that doesn't compile is found before anything is loaded
+                        FormulaCell formula = new FormulaCell(readString(body, string++, stringCount), sheet);
+                        if (section.tags[i] == TAG_FORMULA) {
+                            formula.restoreValue(section.numbers[i], CellError.NONE);
+                        } else {
+                            formula.restoreValue(0.0, CellError.values()[(int) section.numbers[i]]);
+                        }
+                        section.entries[i] = formula;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid cell tag");
+                }
+            }
+            if (string != stringCount) {
+                throw new IllegalArgumentException("Invalid string table");
+            }
+            sections.add(section);
+        }
+        return sections;
+    }
+
+    // Empties sheet and loads the decoded columns into it
+    private static void load(Spreadsheet sheet, ArrayList<Section> sections) {
+        sheet.beginLoad();
+        for (Section section : sections) {
+            for (int i = 0; i < section.rows.length; i++) {
+                double number = section.numbers[i];
+                Cell cell;
+                switch (section.tags[i]) {
+                    case TAG_DOUBLE_TEXT:
+                        cell = new ValueCell(Double.toString(number), number);
+                        break;
+                    case TAG_LONG_TEXT:
+                        cell = new ValueCell(Long.toString((long) number), number);
+                        break;
+                    case TAG_RAW_TEXT:
+                        cell = new ValueCell((String) section.entries[i], number);
+                        break;
+                    case TAG_PERCENT:
+                        cell = new PercentCell(Double.toString(number) + "%", number / 100);
+                        break;
+                    case TAG_TEXT:
+                        cell = new TextCell((String) section.entries[i]);
+                        break;
+                    default:
+                        cell = (FormulaCell) section.entries[i];
+                }
+                sheet.loadCell(cell, section.rows[i], section.col);
+            }
+        }
+    }
+
+    // Reads the next string of the string table, which holds count strings
+    private static String readString(ByteBuffer body, int index, int count) {
+        if (index >= count) {
+            throw new IllegalArgumentException("Invalid string table");
+        }
+        int length = body.getInt();
+        // Checked first, so a corrupt length can't allocate a huge array
+        if (length < 0 || length > body.remaining()) {
+            throw new IllegalArgumentException("Invalid string length");
+        }
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Inflates the rest of mapped into a buffer of length bytes
+    private static ByteBuffer inflate(ByteBuffer mapped, long length, Path path) throws IOException {
+        if (length < 0 || length > Integer.MAX_VALUE - 8) {
+            throw new IOException(path + " is too large to load");
+        }
+        byte[] body = new byte[(int) length];
+        byte[] input = new byte[BUFFER_SIZE];
+        Inflater inflater = new Inflater();
+        try {
+            int inflated = 0;
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (!mapped.hasRemaining()) {
+                        throw new IOException(path + " is truncated");
+                    }
+                    int chunk = Math.min(input.length, mapped.remaining());
+                    mapped.get(input, 0, chunk);
+                    inflater.setInput(input, 0, chunk);
+                }
+                int read = inflater.inflate(body, inflated, body.length - inflated);
+                inflated += read;
+                // Stuck without needing input: more data than the header says, or a stream needing a dictionary
+                if (read == 0 && !inflater.finished() && !inflater.needsInput()) {
+                    throw new IOException(path + " is corrupt");
+                }
+            }
+            if (inflated != body.length) {
+                throw new IOException(path + " is corrupt");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(path + " is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Decoded column of a snapshot: rows, tags and numbers of its cells, and the string of raw text values
+    // and text cells, or the formula cell of formulas, at the same index. entries is null if no cell has one
+    private static class Section {
+        private final int col;
+        private final int[] rows;
+        private final byte[] tags;
+        private final double[] numbers;
+        private Object[] entries;
+
+        private Section(int col, int count) {
+            this.col = col;
+            rows = new int[count];
+            tags = new byte[count];
+            numbers = new double[count];
+        }
+    }
+
+    // Little-endian buffer in front of a channel, counting the bytes written through it
+    private static class Output {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer;
+        private long written;
+
+        private Output(WritableByteChannel channel) {
+            this.channel = channel;
+            buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        // Returns buffer with room for bytes more bytes, which must be at most BUFFER_SIZE
+        private ByteBuffer reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            return buffer;
+        }
+
+        // Writes bytes of any length
+        private void write(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            written += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+}
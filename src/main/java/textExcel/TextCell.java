@@ -9,6 +9,8 @@ package textExcel;
 public class TextCell implements Cell, Comparable<TextCell> {
 
     private String cellText;
+    // Display text, formatted the first time it's asked for
+    private String abbreviatedText;
 
     // Simply assign cell text to value
     // Assumes input text has no ""s
@@ -19,7 +21,10 @@ public class TextCell implements Cell, Comparable<TextCell> {
     // Returns max 10 characters from value
     @Override
     public String abbreviatedCellText() {
-        return (cellText + "          ").substring(0,10);
+        if (abbreviatedText == null) {
+            abbreviatedText = (cellText + "          ").substring(0,10);
+        }
+        return abbreviatedText;
     }
 
     // Returns full string with "" to denote that it is a string
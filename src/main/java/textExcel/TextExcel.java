@@ -6,6 +6,10 @@
  */
 package textExcel;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.file.Paths;
 import java.util.Scanner;
 
 // Update this file with your own code.
@@ -13,7 +17,7 @@ import java.util.Scanner;
 public class TextExcel
 {
 	private static final String version = "5.0";
-	public static void main(String[] args)
+	public static void main(String[] args) throws IOException
 	{
 	    System.out.println("Welcome to TextExcel v" + version + " by Alec Machlis!");
 	    System.out.println("Commands:");
@@ -22,19 +26,122 @@ public class TextExcel
 		System.out.println();
 	    System.out.println("Creating an empty spreadsheet...");
 
-		Spreadsheet spreadsheet = new Spreadsheet();
-		System.out.println(spreadsheet);
-		System.out.println();
-		System.out.println("Done!");
+		// Process startup flags
+		int threads = 1;
+		int rows = 20;
+		int cols = 12;
+		boolean columnar = false;
+		OutputMode outputMode = OutputMode.FULL;
+		long sortMemory = -1;
+		String journalPath = null;
+		int journalSync = 1;
+		int checkpointInterval = 1000;
+		for (String arg : args) {
+			if (arg.startsWith("--threads=")) {
+				// Threads used to recalculate independent formulas at the same time
+				threads = parsePositive(arg, "--threads=", "thread count", threads);
+			} else if (arg.startsWith("--size=")) {
+				// Rows and columns of the spreadsheet, as <rows>x<cols>
+				String[] size = arg.substring("--size=".length()).toLowerCase().split("x");
+				try {
+					if (size.length != 2 || Integer.parseInt(size[0]) < 1 || Integer.parseInt(size[1]) < 1) {
+						throw new NumberFormatException();
+					}
+					rows = Integer.parseInt(size[0]);
+					cols = Integer.parseInt(size[1]);
+				} catch (NumberFormatException e) {
+					System.out.println("Invalid size: " + arg);
+				}
+			} else if (arg.equals("--storage=columnar")) {
+				// Keep numbers in per-column arrays instead of cell objects
+				columnar = true;
+			} else if (arg.equals("--storage=chunked")) {
+				columnar = false;
+			} else if (arg.startsWith("--output=")) {
+				// What commands that change cells display: full, diff or ack
+				try {
+					outputMode = OutputMode.valueOf(arg.substring("--output=".length()).toUpperCase());
+				} catch (IllegalArgumentException e) {
+					System.out.println("Unknown output mode: " + arg);
+				}
+			} else if (arg.startsWith("--sort-memory=")) {
+				// Megabytes of sort keys kept in memory. Larger sorts spill to temporary files
+				try {
+					sortMemory = Long.parseLong(arg.substring("--sort-memory=".length()));
+				} catch (NumberFormatException e) {
+					sortMemory = 0;
+				}
+				if (sortMemory < 1 || sortMemory > Long.MAX_VALUE >> 20) {
+					System.out.println("Invalid sort memory: " + arg);
+					sortMemory = -1;
+				} else {
+					sortMemory <<= 20;
+				}
+			} else if (arg.startsWith("--journal=")) {
+				// File commands that change cells are journaled to, so the spreadsheet is restored on the next start
+				journalPath = arg.substring("--journal=".length());
+			} else if (arg.startsWith("--journal-sync=")) {
+				// Journaled commands forced to disk at once. Up to this many less 1 can be lost if the machine crashes
+				journalSync = parsePositive(arg, "--journal-sync=", "journal sync batch", journalSync);
+			} else if (arg.startsWith("--checkpoint=")) {
+				// Journaled commands between snapshots of the spreadsheet, after which the journal starts over
+				checkpointInterval = parsePositive(arg, "--checkpoint=", "checkpoint interval", checkpointInterval);
+			} else {
+				System.out.println("Unknown flag: " + arg);
+			}
+		}
+		Spreadsheet spreadsheet;
+		if (columnar) {
+			spreadsheet = new Spreadsheet(new ColumnarCellStorage(rows, cols));
+		} else {
+			spreadsheet = new Spreadsheet(rows, cols);
+		}
+		spreadsheet.setRecalculationThreads(threads);
+		spreadsheet.setOutputMode(outputMode);
+		if (sortMemory != -1) {
+			spreadsheet.setSortMemoryBudget(sortMemory);
+		}
+		if (journalPath != null) {
+			int replayed = spreadsheet.openJournal(Paths.get(journalPath), journalSync, checkpointInterval);
+			System.out.println("Restored spreadsheet from " + journalPath + " (" + replayed + " journaled commands)");
+		}
+		// Output is streamed through a buffer, so large grids are written without being built as one String
+		BufferedWriter output = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+		spreadsheet.writeGrid(output);
+		output.newLine();
+		output.newLine();
+		output.write("Done!");
+		output.newLine();
 
 		String command = "";
 		Scanner input = new Scanner(System.in);
 		while (!command.equalsIgnoreCase("quit")) {
-			System.out.print("textExcel-" + version + "$ ");
+			output.write("textExcel-" + version + "$ ");
+			// Show everything before waiting for the next command
+			output.flush();
 			command = input.nextLine().trim();
-			System.out.println(spreadsheet.processCommand(command));
+			spreadsheet.processCommand(command, output);
+			output.newLine();
+		}
+		spreadsheet.closeJournal();
+		output.write("Goodbye!");
+		output.newLine();
+		output.flush();
+	}
+
+	// Returns the number after prefix in flag arg, or prints that it's invalid and returns fallback
+	// if it isn't a whole number of at least 1
+	private static int parsePositive(String arg, String prefix, String name, int fallback) {
+		try {
+			int value = Integer.parseInt(arg.substring(prefix.length()));
+			if (value >= 1) {
+				return value;
+			}
+		} catch (NumberFormatException e) {
+			// Reported below
 		}
-		System.out.println("Goodbye!");
+		System.out.println("Invalid " + name + ": " + arg);
+		return fallback;
 	}
 
 }
@@ -10,4 +10,9 @@ public class ValueCell extends RealCell {
     public ValueCell(String value) {
         super(value);
     }
+
+    // Rebuilds cell from its entered text and already parsed value
+    ValueCell(String value, double doubleValue) {
+        super(value, doubleValue);
+    }
 }
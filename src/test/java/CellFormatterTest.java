@@ -0,0 +1,84 @@
+/*
+ * Checks that CellFormatter gives exactly the text the String based formatting it replaced gave
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+
+import java.util.Random;
+
+import org.junit.Test;
+import textExcel.*;
+
+import static org.junit.Assert.*;
+
+public class CellFormatterTest
+{
+    private static void assertSameValueText(double value)
+    {
+        assertEquals("formatting " + value, (value + "          ").substring(0, 10), CellFormatter.formatValue(value));
+    }
+
+    private static void assertSamePercentText(double percent)
+    {
+        String expected = (((int) percent + "          ").substring(0, 9).trim() + "%         ").substring(0, 10);
+        assertEquals("formatting " + percent + "%", expected, CellFormatter.formatPercent(percent));
+    }
+
+    @Test
+    public void testSpecialValues()
+    {
+        double[] values = {0.0, -0.0, 1.0, -1.0, 0.001, -0.001, 0.0009999999999999998, 9999999.0, 9999999.999999998,
+                1e7, -1e7, 0.1 + 0.2, 0.3, 1.0 / 3, 2.0 / 3, 123456.789, 12345678.9, 1e-4, 5e-324, Double.MIN_NORMAL,
+                Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 4.35, 0.1 * 3,
+                100.0 / 7, 2.5e-3, 0.0125, 999999.95, 1234567.125, 3.0E-3, 0.009999999999999998};
+        for (double value : values)
+        {
+            assertSameValueText(value);
+        }
+    }
+
+    @Test
+    public void testShortDecimals()
+    {
+        // Values typed into cells, and sums and products of them
+        Random random = new Random(16);
+        for (int i = 0; i < 200000; i++)
+        {
+            int decimals = random.nextInt(8);
+            double value = (random.nextInt(2000000000) - 1000000000) / Math.pow(10, decimals);
+            assertSameValueText(value);
+            assertSameValueText(value / 100);
+            assertSameValueText(value * 3);
+            assertSameValueText(value + 0.1);
+        }
+    }
+
+    @Test
+    public void testRandomDoubles()
+    {
+        Random random = new Random(17);
+        for (int i = 0; i < 200000; i++)
+        {
+            // Random bits cover every exponent, random doubles cover the plain notation range
+            assertSameValueText(Double.longBitsToDouble(random.nextLong()));
+            assertSameValueText(random.nextDouble() * Math.pow(10, random.nextInt(12) - 4));
+            assertSameValueText(-random.nextDouble() * 1000);
+        }
+    }
+
+    @Test
+    public void testPercents()
+    {
+        double[] percents = {0, 50, -50, 99.9, -0.5, 123456789, 1234567890, -1234567890, 1e12, -1e12, Double.NaN};
+        for (double percent : percents)
+        {
+            assertSamePercentText(percent);
+        }
+        Random random = new Random(18);
+        for (int i = 0; i < 100000; i++)
+        {
+            assertSamePercentText((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(14)));
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Runs the tests of TestsALL again on spreadsheets that keep their cells in ColumnarCellStorage.
+ * Each class here extends one from TestsALL, and replaces the spreadsheet its @Before made with a columnar one
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+
+import java.lang.reflect.Field;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import textExcel.*;
+
+import static org.junit.Assert.*;
+
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+        ColumnarStorageTest.A_Checkpoint1.class,
+        ColumnarStorageTest.A_Checkpoint2.class,
+        ColumnarStorageTest.A_Checkpoint3.class,
+        ColumnarStorageTest.B_Checkpoint1.class,
+        ColumnarStorageTest.B_Final.class,
+        ColumnarStorageTest.C_Checkpoint1.class,
+        ColumnarStorageTest.C_Final.class,
+        ColumnarStorageTest.ExtraCreditCommandErrors.class,
+        ColumnarStorageTest.ExtraCreditCommandHistory.class,
+        ColumnarStorageTest.ExtraCreditCircularReferenceErrors.class,
+        ColumnarStorageTest.ExtraCreditEvaluationErrors.class,
+        ColumnarStorageTest.ExtraCreditOperationOrder.class,
+        ColumnarStorageTest.C_ExtraCreditHeterogeneousSorting.class,
+        ColumnarStorageTest.ViewCache.class,
+})
+
+public class ColumnarStorageTest
+{
+    // Sets the grid field of test, declared by one of the TestsALL classes it extends, to a columnar spreadsheet.
+    // Runs after the superclass's @Before, which made the usual spreadsheet
+    private static void useColumnarStorage(Object test)
+    {
+        for (Class<?> type = test.getClass(); type != null; type = type.getSuperclass())
+        {
+            try
+            {
+                Field grid = type.getDeclaredField("grid");
+                grid.setAccessible(true);
+                grid.set(test, new Spreadsheet(new ColumnarCellStorage(20, 12)));
+                return;
+            }
+            catch (NoSuchFieldException e)
+            {
+                // Declared further up
+            }
+            catch (IllegalAccessException e)
+            {
+                throw new AssertionError(e);
+            }
+        }
+        throw new AssertionError(test.getClass() + " has no grid field");
+    }
+
+    public static class A_Checkpoint1 extends TestsALL.A_Checkpoint1
+    {
+        @Before
+        public void useColumnarStorage()
+        {
+            ColumnarStorageTest.useColumnarStorage(this);
+        }
+    }
+
+    public static class A_Checkpoint2 extends TestsALL.A_Checkpoint2
+    {
+        @Before
+        public void useColumnarStorage()
+        {
+            ColumnarStorageTest.useColumnarStorage(this);
+        }
+    }
+
+    public static class A_Checkpoint3 extends TestsALL.A_Checkpoint3
+    {
+        @Before
+        public void useColumnarStorage()
+        {
+            ColumnarStorageTest.useColumnarStorage(this);
+        }
+    }
+
+    public static class B_Checkpoint1 extends TestsALL.B_Checkpoint1
+    {
+        @Before
+        public void useColumnarStorage()
+        {
+            ColumnarStorageTest.useColumnarStorage(this);
+        }
+    }
+
+    public static class B_Final extends TestsALL.B_Final
+    {
+        @Before
+        public void useColumnarStorage()
+        {
+            ColumnarStorageTest.useColumnarStorage(this);
+        }
+    }
+
+    public static class C_Checkpoint1 extends TestsALL.C_Checkpoint1
+    {
+        @Before
+        public void useColumnarStorage()
+        {
+            ColumnarStorageTest.useColumnarStorage(this);
+        }
+    }
+
+    public static class C_Final extends TestsALL.C_Final
+    {
+        @Before
+        public void useColumnarStorage()
+        {
+            ColumnarStorageTest.useColumnarStorage(this);
+        }
+    }
+
+    public static class ExtraCreditCommandErrors extends TestsALL.ExtraCreditCommandErrors
+    {
+        @Before
+        public void useColumnarStorage()
+        {
+            ColumnarStorageTest.useColumnarStorage(this);
+        }
+    }
+
+    public static class ExtraCreditCommandHistory extends TestsALL.ExtraCreditCommandHistory
+    {
+        @Before
+        public void useColumnarStorage()
+        {
+            ColumnarStorageTest.useColumnarStorage(this);
+        }
+    }
+
+    public static class ExtraCreditCircularReferenceErrors extends TestsALL.ExtraCreditCircularReferenceErrors
+    {
+        @Before
+        public void useColumnarStorage()
+        {
+            ColumnarStorageTest.useColumnarStorage(this);
+        }
+    }
+
+    public static class ExtraCreditEvaluationErrors extends TestsALL.ExtraCreditEvaluationErrors
+    {
+        @Before
+        public void useColumnarStorage()
+        {
+            ColumnarStorageTest.useColumnarStorage(this);
+        }
+    }
+
+    public static class ExtraCreditOperationOrder extends TestsALL.ExtraCreditOperationOrder
+    {
+        @Before
+        public void useColumnarStorage()
+        {
+            ColumnarStorageTest.useColumnarStorage(this);
+        }
+    }
+
+    public static class C_ExtraCreditHeterogeneousSorting extends TestsALL.C_ExtraCreditHeterogeneousSorting
+    {
+        @Before
+        public void useColumnarStorage()
+        {
+            ColumnarStorageTest.useColumnarStorage(this);
+        }
+    }
+
+    public static class ViewCache
+    {
+        @Test
+        public void testViewsAreReused()
+        {
+            ColumnarCellStorage storage = new ColumnarCellStorage(20, 12);
+            storage.set(0, 0, new ValueCell("1.5"));
+            storage.set(1, 0, new PercentCell("25%"));
+            storage.set(2, 0, new TextCell("a"));
+            for (int row = 0; row < 3; row++)
+            {
+                Cell cell = storage.get(row, 0);
+                assertSame(cell, storage.get(row, 0));
+                // Same cell keeps the display text it formatted
+                assertSame(cell.abbreviatedCellText(), storage.get(row, 0).abbreviatedCellText());
+            }
+
+            // Changed and moved cells give views of what they hold now
+            storage.set(0, 0, new ValueCell("2"));
+            assertEquals("2", storage.get(0, 0).fullCellText());
+            storage.permuteRows(0, 0, 2, 0, new int[]{2, 1, 0});
+            assertEquals("a", storage.get(0, 0).abbreviatedCellText().trim());
+            assertEquals("2", storage.get(2, 0).fullCellText());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Tests for the ring buffer command history: eviction once full, clearing across the end of the buffer,
+ * and large histories that shouldn't cost more per command
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+
+import org.junit.Test;
+import textExcel.*;
+
+import static org.junit.Assert.*;
+
+public class CommandHistoryTest
+{
+    private static String getText(CommandHistory history) throws java.io.IOException
+    {
+        StringBuilder text = new StringBuilder();
+        history.write(text);
+        return text.toString();
+    }
+
+    @Test
+    public void testEvictAndClearAcrossEnd() throws java.io.IOException
+    {
+        CommandHistory history = new CommandHistory(3);
+        for (int i = 1; i <= 5; i++)
+        {
+            history.add("A" + i);
+        }
+        // Oldest commands were evicted, so the buffer now wraps around
+        assertEquals("A5\nA4\nA3\n", getText(history));
+        history.clearOldest(2);
+        assertEquals("A5\n", getText(history));
+        history.add("A6");
+        history.add("A7");
+        history.add("A8");
+        assertEquals("A8\nA7\nA6\n", getText(history));
+        history.clearOldest(10);
+        assertEquals(0, history.size());
+        assertEquals("", getText(history));
+    }
+
+    @Test
+    public void testGrowsUpToCapacity() throws java.io.IOException
+    {
+        // Capacity this large isn't allocated up front
+        CommandHistory history = new CommandHistory(Integer.MAX_VALUE);
+        for (int i = 0; i < 100; i++)
+        {
+            history.add("A" + i);
+        }
+        assertEquals(100, history.size());
+        assertTrue(getText(history).startsWith("A99\nA98\n"));
+        assertTrue(getText(history).endsWith("A1\nA0\n"));
+    }
+
+    @Test(timeout = 10000)
+    public void testLargeHistory()
+    {
+        Spreadsheet grid = new Spreadsheet();
+        grid.setOutputMode(OutputMode.ACK);
+        grid.processCommand("history start 100000");
+        for (int i = 0; i < 300000; i++)
+        {
+            grid.processCommand("A1");
+        }
+        grid.processCommand("A2");
+        grid.processCommand("history clear 99999");
+        assertEquals("A2\n", grid.processCommand("history display"));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Tests for CSV import and export: typed and quoted fields, files split into chunks parsed at the same time,
+ * formulas reading imported cells, and export giving back what import reads
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import textExcel.*;
+
+import static org.junit.Assert.*;
+
+public class CsvTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path write(String name, String text) throws IOException
+    {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void testImportFields() throws IOException
+    {
+        Path file = write("fields.csv", "5, 12.5% ,name,\"a, \"\"quoted\"\"\nline\"\r\n,,-3e2\r\n\nN/A,\"\",7,");
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("B2 = \"old\"");
+        sheet.processCommand("A10 = ( sum B2-B5 )");
+        assertEquals("Imported 8 cells from " + file, sheet.processCommand("import csv " + file + " b2"));
+
+        assertEquals("5", sheet.getCell(1, 1).fullCellText());
+        assertEquals("0.125", sheet.getCell(1, 2).fullCellText());
+        assertEquals("\"name\"", sheet.getCell(1, 3).fullCellText());
+        assertEquals("\"a, \"quoted\"\nline\"", sheet.getCell(1, 4).fullCellText());
+        // Empty fields are empty cells
+        assertEquals("", sheet.getCell(2, 1).fullCellText());
+        assertEquals("-3e2", sheet.getCell(2, 3).fullCellText());
+        assertEquals("", sheet.getCell(3, 1).fullCellText());
+        assertEquals("\"N/A\"", sheet.getCell(4, 1).fullCellText());
+        assertEquals("\"\"", sheet.getCell(4, 2).fullCellText());
+        assertEquals("7", sheet.getCell(4, 3).fullCellText());
+        assertEquals("", sheet.getCell(4, 4).fullCellText());
+        // Formula reading imported cells was recalculated, and reads the empty cells and text as an error
+        assertEquals("#ERROR    ", sheet.getCell(9, 0).abbreviatedCellText());
+        sheet.processCommand("B3 = 1");
+        sheet.processCommand("B4 = 1");
+        sheet.processCommand("B5 = 1");
+        assertEquals("8.0       ", sheet.getCell(9, 0).abbreviatedCellText());
+    }
+
+    @Test
+    public void testImportChunks() throws IOException
+    {
+        // Big enough to be split into a few chunks, with a quoted line break in every line
+        int lines = 3 * CsvImporter.CHUNK_SIZE / 40;
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++)
+        {
+            text.append(i).append(",\"line\n").append(i).append("\",").append(i % 100).append("%\n");
+        }
+        Path file = write("chunks.csv", text.toString());
+        Spreadsheet sheet = new Spreadsheet(lines, 3);
+        sheet.setOutputMode(OutputMode.ACK);
+        assertEquals("Imported " + 3 * lines + " cells from " + file, sheet.processCommand("import csv " + file + " A1"));
+        for (int i = 0; i < lines; i += 997)
+        {
+            assertEquals(Integer.toString(i), sheet.getCell(i, 0).fullCellText());
+            assertEquals("\"line\n" + i + "\"", sheet.getCell(i, 1).fullCellText());
+            assertEquals((i % 100) / 100.0, ((RealCell) sheet.getCell(i, 2)).getDoubleValue(), 0.0);
+        }
+    }
+
+    @Test
+    public void testExportAndImportBack() throws IOException
+    {
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("A1 = 5");
+        sheet.processCommand("B1 = 12.5%");
+        sheet.processCommand("C1 = \"say \"hi\", ok\"");
+        sheet.processCommand("A2 = ( A1 * 2 )");
+        sheet.processCommand("D3 = \"42\"");
+        Path file = folder.getRoot().toPath().resolve("out.csv");
+        assertEquals("Exported 3 rows to " + file, sheet.processCommand("export csv " + file));
+        assertEquals("5,12.5%,\"say \"\"hi\"\", ok\",\n10.0,,,\n,,,\"42\"\n",
+                new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+
+        Spreadsheet imported = new Spreadsheet();
+        imported.processCommand("import csv " + file + " A1");
+        assertEquals(sheet.getCell(0, 0).fullCellText(), imported.getCell(0, 0).fullCellText());
+        assertEquals(sheet.getCell(0, 1).fullCellText(), imported.getCell(0, 1).fullCellText());
+        assertEquals(sheet.getCell(0, 2).fullCellText(), imported.getCell(0, 2).fullCellText());
+        assertEquals("10.0", imported.getCell(1, 0).fullCellText());
+        // Text that looks like a number stays text
+        assertEquals("\"42\"", imported.getCell(2, 3).fullCellText());
+
+        assertEquals("Exported 1 rows to " + file, sheet.processCommand("export csv " + file + " B1-C1"));
+        assertEquals("12.5%,\"say \"\"hi\"\", ok\"\n", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testImportErrors() throws IOException
+    {
+        Path file = write("wide.csv", "1,2,3\n4,5,6\n");
+        Spreadsheet sheet = new Spreadsheet();
+        assertTrue(sheet.processCommand("import csv " + file + " K1").startsWith("ERROR:"));
+        assertTrue(sheet.processCommand("import csv " + file + " A20").startsWith("ERROR:"));
+        assertTrue(sheet.processCommand("import csv " + file + ".missing A1").startsWith("ERROR: Could not import"));
+        assertTrue(sheet.processCommand("import " + file + " A1").startsWith("ERROR: Invalid import command"));
+        // Nothing was imported
+        assertEquals("", sheet.getCell(0, 10).fullCellText());
+        assertEquals("Imported 6 cells from " + file, sheet.processCommand("import csv " + file + " J19"));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Benchmark for memoized formula values: a chain of diamond shaped dependencies where every level reads
+ * both cells of the level before it. Without memoization each read re-evaluates the shared cells,
+ * doing 2^depth evaluations; with memoization each formula is calculated once per change.
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+import textExcel.*;
+
+import static org.junit.Assert.*;
+
+public class DiamondChainBenchmarkTest
+{
+    private static final int DEPTH = 30;
+
+    private Spreadsheet grid;
+
+    @Before
+    public void initializeGrid()
+    {
+        grid = new Spreadsheet();
+    }
+
+    // Level k is in rows k % 20, in columns A and B for the first 20 levels and C and D after that
+    private static String leftCell(int level)
+    {
+        return "" + (char) ('A' + 2 * (level / 20)) + (level % 20 + 1);
+    }
+
+    private static String rightCell(int level)
+    {
+        return "" + (char) ('B' + 2 * (level / 20)) + (level % 20 + 1);
+    }
+
+    // Builds levels 0 to depth, both cells of level k being ( left(k-1) + right(k-1) ), so both hold 2^k
+    private void buildChain(int depth)
+    {
+        grid.processCommand(leftCell(0) + " = 1");
+        grid.processCommand(rightCell(0) + " = 1");
+        for (int level = 1; level <= depth; level++)
+        {
+            String formula = "( " + leftCell(level - 1) + " + " + rightCell(level - 1) + " )";
+            grid.processCommand(leftCell(level) + " = " + formula);
+            grid.processCommand(rightCell(level) + " = " + formula);
+        }
+    }
+
+    private double getValue(String name)
+    {
+        return Double.parseDouble(((FormulaCell) grid.getCell(new SpreadsheetLocation(name))).getFullStringValue());
+    }
+
+    @Test(timeout = 10000)
+    public void testThirtyLevelDiamondChain()
+    {
+        buildChain(DEPTH);
+        assertEquals("top of chain", Math.pow(2, DEPTH), getValue(leftCell(DEPTH)), 1e-6);
+
+        // Changing the bottom of the chain recalculates every level once
+        grid.processCommand(leftCell(0) + " = 3");
+        assertEquals("top of chain after change", 2 * Math.pow(2, DEPTH), getValue(rightCell(DEPTH)), 1e-6);
+        assertEquals("printed grid length", grid.getGridText().length(), grid.processCommand("print").length());
+    }
+
+    // Formula that counts how many times it's calculated
+    private static class CountingFormulaCell extends FormulaCell
+    {
+        private static int calculations;
+
+        CountingFormulaCell(String formula, Spreadsheet sheet)
+        {
+            super(formula, sheet);
+        }
+
+        @Override
+        public void recalculate()
+        {
+            calculations++;
+            super.recalculate();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testCostGrowsLinearlyWithDepth()
+    {
+        // Count calculations after a change at the bottom of chains of increasing depth.
+        // Exponential cost would double per level: memoized, each of the 2 * depth formulas is calculated once
+        for (int depth = 5; depth <= DEPTH; depth += 5)
+        {
+            grid = new Spreadsheet();
+            grid.processCommand(leftCell(0) + " = 1");
+            grid.processCommand(rightCell(0) + " = 1");
+            for (int level = 1; level <= depth; level++)
+            {
+                String formula = "( " + leftCell(level - 1) + " + " + rightCell(level - 1) + " )";
+                grid.setCell(new CountingFormulaCell(formula, grid), new SpreadsheetLocation(leftCell(level)));
+                grid.setCell(new CountingFormulaCell(formula, grid), new SpreadsheetLocation(rightCell(level)));
+            }
+            for (int i = 0; i < 10; i++)
+            {
+                CountingFormulaCell.calculations = 0;
+                grid.processCommand(leftCell(0) + " = " + i);
+                assertEquals("calculations at depth " + depth, 2 * depth, CountingFormulaCell.calculations);
+            }
+            assertEquals("top of chain", (9 + 1) * Math.pow(2, depth - 1), getValue(leftCell(depth)), 1e-6);
+        }
+    }
+}
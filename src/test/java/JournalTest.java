@@ -0,0 +1,143 @@
+/*
+ * Tests for the write-ahead command journal: restoring after a restart, dropping a torn record at the end,
+ * and checkpoints that snapshot the cells and start the journal over
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import textExcel.*;
+
+import static org.junit.Assert.*;
+
+public class JournalTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Spreadsheet open(Path journal, int checkpointInterval) throws IOException
+    {
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.openJournal(journal, 1, checkpointInterval);
+        return sheet;
+    }
+
+    @Test
+    public void testRestoreAfterRestart() throws IOException
+    {
+        Path journal = folder.getRoot().toPath().resolve("sheet.journal");
+        Spreadsheet sheet = open(journal, 1000);
+        sheet.processCommand("A1 = 5");
+        sheet.processCommand("A2 = 25%");
+        sheet.processCommand("B1 = \"hello world\"");
+        sheet.processCommand("C1 = ( A1 * A2 )");
+        sheet.processCommand("print");
+        sheet.processCommand("sorta A1-A2");
+        sheet.processCommand("clear B1");
+        String expected = sheet.getGridText();
+        sheet.closeJournal();
+
+        Spreadsheet restored = new Spreadsheet();
+        // Print doesn't change cells, so it isn't journaled
+        assertEquals(6, restored.openJournal(journal, 1, 1000));
+        assertEquals(expected, restored.getGridText());
+        restored.closeJournal();
+    }
+
+    @Test
+    public void testTornRecordIsDropped() throws IOException
+    {
+        Path journal = folder.getRoot().toPath().resolve("sheet.journal");
+        Spreadsheet sheet = open(journal, 1000);
+        sheet.processCommand("A1 = 1");
+        sheet.processCommand("A2 = 2");
+        sheet.closeJournal();
+        long length = Files.size(journal);
+        // Crash partway through writing the second record
+        try (RandomAccessFile file = new RandomAccessFile(journal.toFile(), "rw"))
+        {
+            file.setLength(length - 3);
+        }
+
+        Spreadsheet restored = open(journal, 1000);
+        assertEquals("1.0       ", restored.getCell(new SpreadsheetLocation("A1")).abbreviatedCellText());
+        assertEquals("          ", restored.getCell(new SpreadsheetLocation("A2")).abbreviatedCellText());
+        // Commands after the torn record are appended where it started
+        restored.processCommand("A3 = 3");
+        restored.closeJournal();
+        Spreadsheet again = new Spreadsheet();
+        assertEquals(2, again.openJournal(journal, 1, 1000));
+        assertEquals(restored.getGridText(), again.getGridText());
+        again.closeJournal();
+    }
+
+    @Test
+    public void testCheckpointTruncatesJournal() throws IOException
+    {
+        Path journal = folder.getRoot().toPath().resolve("sheet.journal");
+        Spreadsheet sheet = open(journal, 4);
+        sheet.processCommand("A1 = \"text\"");
+        sheet.processCommand("A2 = 12.5%");
+        sheet.processCommand("A3 = -7");
+        sheet.processCommand("A4 = ( sum A2-A3 )");
+        // Checkpoint was taken after the 4th command, so only the header is left
+        long emptyLength = Files.size(journal);
+        sheet.processCommand("B1 = ( A4 + 1 )");
+        assertTrue(Files.size(journal) > emptyLength);
+        assertTrue(Files.exists(folder.getRoot().toPath().resolve("sheet.journal.snapshot")));
+        String expected = sheet.getGridText();
+        sheet.closeJournal();
+
+        Spreadsheet restored = new Spreadsheet();
+        assertEquals(1, restored.openJournal(journal, 1, 4));
+        assertEquals(expected, restored.getGridText());
+        assertEquals("0.125", restored.getCell(new SpreadsheetLocation("A2")).fullCellText());
+        restored.closeJournal();
+    }
+
+    @Test
+    public void testUnknownRecordTypeKeepsJournal() throws IOException
+    {
+        Path journal = folder.getRoot().toPath().resolve("sheet.journal");
+        Spreadsheet sheet = open(journal, 1000);
+        sheet.processCommand("A1 = 1");
+        sheet.processCommand("A2 = 2");
+        sheet.processCommand("A3 = 3");
+        sheet.closeJournal();
+
+        // Records are length, sequence, type, payload and checksum. Give the second a new type and a valid checksum
+        byte[] data = Files.readAllBytes(journal);
+        int recordLength = 4 + 8 + 1 + "A1 = 1".length() + 4;
+        int second = data.length - 2 * recordLength;
+        data[second + 12] = 9;
+        CRC32 crc = new CRC32();
+        crc.update(data, second + 4, 8 + 1 + "A2 = 2".length());
+        int checksum = (int) crc.getValue();
+        for (int i = 0; i < 4; i++)
+        {
+            data[second + recordLength - 4 + i] = (byte) (checksum >>> (24 - 8 * i));
+        }
+        Files.write(journal, data);
+
+        try
+        {
+            new Spreadsheet().openJournal(journal, 1, 1000);
+            fail("Journal with an unknown record type was opened");
+        }
+        catch (IOException e)
+        {
+            // Expected
+        }
+        // Nothing after the unknown record was dropped
+        assertArrayEquals(data, Files.readAllBytes(journal));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Tests for spreadsheets larger than 20 x 12 through the command path: cells past row 20 and column Z
+ * are assigned, read, cleared, printed and shown in the viewport like any other cell
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+import textExcel.*;
+
+import static org.junit.Assert.*;
+
+public class LargeSheetTest
+{
+    private Spreadsheet grid;
+
+    @Before
+    public void initializeGrid()
+    {
+        grid = new Spreadsheet(100000, 100);
+    }
+
+    @Test
+    public void testAssignAndReadFarCells()
+    {
+        grid.setOutputMode(OutputMode.ACK);
+        assertEquals("OK", grid.processCommand("AA30 = 7"));
+        assertEquals("7", grid.processCommand("aa30"));
+        assertEquals("OK", grid.processCommand("CV100000 = \"far\""));
+        assertEquals("\"far\"", grid.processCommand("CV100000"));
+        grid.processCommand("B99999 = ( AA30 * 3 )");
+        assertEquals("21.0      ", grid.getCell(new SpreadsheetLocation("B99999")).abbreviatedCellText());
+        grid.processCommand("AA30 = 1");
+        assertEquals("3.0       ", grid.getCell(new SpreadsheetLocation("B99999")).abbreviatedCellText());
+
+        grid.processCommand("clear CV100000");
+        assertEquals("", grid.processCommand("CV100000"));
+        // Just outside the spreadsheet
+        assertEquals("ERROR: Invalid command or invalid cell name.", grid.processCommand("CW1 = 1"));
+        assertEquals("ERROR: Invalid command or invalid cell name.", grid.processCommand("A100001 = 1"));
+    }
+
+    @Test
+    public void testPrintFarRange()
+    {
+        grid.processCommand("viewport A1-A1");
+        grid.processCommand("AA30 = 7");
+        grid.processCommand("CV100000 = \"far\"");
+        assertEquals("   |Z         |AA        |AB        |\n"
+                + "29 |          |          |          |\n"
+                + "30 |          |7.0       |          |\n"
+                + "31 |          |          |          |\n", grid.processCommand("print Z29-AB31"));
+        assertEquals("      |CU        |CV        |\n"
+                + "99999 |          |          |\n"
+                + "100000|          |far       |\n", grid.processCommand("print CU99999-CV100000"));
+    }
+
+    @Test
+    public void testFarViewport()
+    {
+        String expected = "      |CU        |CV        |\n"
+                + "99999 |          |          |\n"
+                + "100000|          |          |\n";
+        assertEquals(expected, grid.processCommand("viewport CU99999-CV100000"));
+        // Commands show the viewport, with the changed cell in it
+        assertEquals(expected.replace("100000|          |          |", "100000|          |4.0       |"),
+                grid.processCommand("CV100000 = 4"));
+        assertEquals(expected.replace("100000|          |          |", "100000|          |4.0       |"),
+                grid.processCommand("AA30 = 1"));
+        assertEquals(expected, grid.processCommand("clear CV100000"));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Tests for multi-letter columns (AA to XFD and beyond) and the allocation-free cell name parser
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+
+import org.junit.Test;
+import textExcel.*;
+
+import static org.junit.Assert.*;
+
+public class MultiLetterColumnTest
+{
+    @Test
+    public void testColumnNames()
+    {
+        assertEquals("A", SpreadsheetLocation.columnName(0));
+        assertEquals("Z", SpreadsheetLocation.columnName(25));
+        assertEquals("AA", SpreadsheetLocation.columnName(26));
+        assertEquals("AZ", SpreadsheetLocation.columnName(51));
+        assertEquals("BA", SpreadsheetLocation.columnName(52));
+        assertEquals("ZZ", SpreadsheetLocation.columnName(701));
+        assertEquals("AAA", SpreadsheetLocation.columnName(702));
+        assertEquals("XFD", SpreadsheetLocation.columnName(16383));
+    }
+
+    @Test
+    public void testParseRoundTrip()
+    {
+        for (int col = 0; col < 20000; col += 7)
+        {
+            String name = SpreadsheetLocation.columnName(col) + "1048576";
+            long key = SpreadsheetLocation.parse(name, 0, name.length());
+            assertEquals("column of " + name, col, SpreadsheetLocation.unpackCol(key));
+            assertEquals("row of " + name, 1048575, SpreadsheetLocation.unpackRow(key));
+        }
+        // Region of a longer string, lower case
+        String text = "( xfd12 + 1 )";
+        long key = SpreadsheetLocation.parse(text, 2, 7);
+        assertEquals(16383, SpreadsheetLocation.unpackCol(key));
+        assertEquals(11, SpreadsheetLocation.unpackRow(key));
+        assertEquals("XFD12", new SpreadsheetLocation(11, 16383).toString());
+    }
+
+    @Test
+    public void testParseInvalid()
+    {
+        String[] invalid = {"", "A", "1", "A0", "1A", "A1B", "A-1", "A+5", "A1.5", "A99999999999", "ABCDEFG1", "A 1"};
+        for (String name : invalid)
+        {
+            assertEquals("parse " + name, SpreadsheetLocation.INVALID, SpreadsheetLocation.parse(name, 0, name.length()));
+        }
+    }
+
+    @Test
+    public void testWideSpreadsheet()
+    {
+        Spreadsheet grid = new Spreadsheet(5, 800);
+        grid.processCommand("AA1 = 2");
+        grid.processCommand("ADT5 = 3");
+        grid.processCommand("B2 = ( AA1 * ADT5 )");
+        grid.processCommand("C2 = ( sum AA1-ADT5 )");
+        assertEquals("2", grid.processCommand("aa1"));
+        assertEquals("6.0       ", grid.getCell(new SpreadsheetLocation("B2")).abbreviatedCellText());
+        // Range has empty cells
+        assertEquals("#ERROR    ", grid.getCell(new SpreadsheetLocation("C2")).abbreviatedCellText());
+        grid.processCommand("clear AA1");
+        assertEquals("", grid.processCommand("AA1"));
+        assertEquals("ERROR: Invalid command or invalid cell name.", grid.processCommand("ADU1 = 5"));
+        String header = grid.getGridText().split("\n")[0];
+        assertTrue(header.startsWith("   |A         |B         |"));
+        assertTrue(header.contains("|Z         |AA        |AB        |"));
+        assertTrue(header.endsWith("|ADT       |"));
+    }
+}
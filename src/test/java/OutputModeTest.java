@@ -0,0 +1,83 @@
+/*
+ * Tests for the full, diff and ack output modes
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+import textExcel.*;
+
+import static org.junit.Assert.*;
+
+public class OutputModeTest
+{
+    private Spreadsheet grid;
+
+    @Before
+    public void initializeGrid()
+    {
+        grid = new Spreadsheet();
+    }
+
+    @Test
+    public void testDiffListsChangedCells()
+    {
+        grid.processCommand("output diff");
+        assertEquals(OutputMode.DIFF, grid.getOutputMode());
+        assertEquals("A1 = 5.0", grid.processCommand("A1 = 5"));
+        assertEquals("C2 = 10.0", grid.processCommand("C2 = ( A1 * 2 )"));
+        // Formulas that read the cell are listed too, in row then column order
+        assertEquals("A1 = 7.0\nC2 = 14.0", grid.processCommand("A1 = 7"));
+        assertEquals("A1 =\nC2 = #ERROR", grid.processCommand("clear A1"));
+        // Print always displays the spreadsheet
+        assertEquals(grid.getGridText(), grid.processCommand("print"));
+    }
+
+    @Test
+    public void testAck()
+    {
+        grid.setOutputMode(OutputMode.ACK);
+        assertEquals("OK", grid.processCommand("A1 = 5"));
+        assertEquals("OK", grid.processCommand("sorta A1-B2"));
+        assertTrue(grid.processCommand("A1 = ( 1 +").startsWith("ERROR"));
+        // Empty cells sort first, so the value moved to the end of the range
+        assertEquals("5", grid.processCommand("B2"));
+        assertEquals("Output mode is full", grid.processCommand("output full"));
+        String echo = grid.processCommand("A2 = 1");
+        assertEquals(grid.getGridText(), echo);
+        assertTrue(grid.processCommand("output loud").startsWith("ERROR"));
+    }
+
+    // Asserts response is the whole spreadsheet as it is after the command
+    private void assertGridShown(String response)
+    {
+        assertEquals(grid.getGridText(), response);
+    }
+
+    @Test
+    public void testHandlersReturnWhatIsDisplayed()
+    {
+        // Called on their own, handlers return the text processCommand would display instead of null
+        assertGridShown(grid.processCellAssignment("A1 = 5"));
+        assertEquals("5", grid.processCellAssignment("A1"));
+        assertGridShown(grid.commandSort("sortd A1-A2", false));
+        assertGridShown(grid.commandSortRows("sort rows A1-B2 by A"));
+        assertGridShown(grid.commandClear("clear A1"));
+        assertGridShown(grid.clearFullSpreadsheet());
+        assertGridShown(grid.commandPrint("print"));
+        assertEquals("   |A         |\n1  |          |\n", grid.commandPrint("print A1-A1"));
+        assertEquals("   |B         |\n2  |          |\n", grid.commandViewport("viewport B2-B2"));
+        grid.commandHistory("history start 3");
+        grid.processCommand("A1 = 1");
+        grid.processCommand("A2 = 2");
+        assertEquals(grid.processCommand("history display"), grid.commandHistoryDisplay("display"));
+        assertTrue(grid.commandHistoryDisplay("display").startsWith("A2 = 2\nA1 = 1"));
+
+        grid.setOutputMode(OutputMode.DIFF);
+        assertEquals("C3 = 4.0", grid.processCellAssignment("C3 = 4"));
+        grid.setOutputMode(OutputMode.ACK);
+        assertEquals("OK", grid.commandClear("clear C3"));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Tests for recalculation split across threads: a change that reaches more formulas than PARALLEL_THRESHOLD
+ * is recalculated on the pool's threads, and every cell ends up with the same value as recalculating on one thread
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import textExcel.*;
+
+import static org.junit.Assert.*;
+
+public class ParallelRecalculationTest
+{
+    private static final int ROWS = 1500;
+
+    // Formula that counts how many times it was calculated on a pool thread
+    private static class ThreadCountingFormulaCell extends FormulaCell
+    {
+        private final AtomicInteger poolCalculations;
+
+        ThreadCountingFormulaCell(String formula, Spreadsheet sheet, AtomicInteger poolCalculations)
+        {
+            super(formula, sheet);
+            this.poolCalculations = poolCalculations;
+        }
+
+        @Override
+        public void recalculate()
+        {
+            if (Thread.currentThread() instanceof ForkJoinWorkerThread)
+            {
+                poolCalculations.incrementAndGet();
+            }
+            super.recalculate();
+        }
+    }
+
+    // Column A holds values, B reads A and A1, C sums B down to its row and D adds B and C
+    private static Spreadsheet build(int threads, AtomicInteger poolCalculations)
+    {
+        Spreadsheet sheet = new Spreadsheet(ROWS, 4);
+        sheet.setRecalculationThreads(threads);
+        sheet.setOutputMode(OutputMode.ACK);
+        for (int row = 1; row <= ROWS; row++)
+        {
+            sheet.processCommand("A" + row + " = " + (row % 17 - 8) * 0.5);
+            sheet.processCommand("B" + row + " = ( A" + row + " * 2 + A1 )");
+            sheet.processCommand("C" + row + " = ( sum B1-B" + row + " )");
+            sheet.setCell(new ThreadCountingFormulaCell("( B" + row + " + C" + row + " )", sheet, poolCalculations),
+                    new SpreadsheetLocation("D" + row));
+        }
+        return sheet;
+    }
+
+    private static void assertSameCells(Spreadsheet expected, Spreadsheet actual)
+    {
+        for (int row = 0; row < ROWS; row++)
+        {
+            for (int col = 0; col < 4; col++)
+            {
+                assertEquals(expected.getCell(row, col).fullCellText(), actual.getCell(row, col).fullCellText());
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testParallelMatchesSingleThread()
+    {
+        AtomicInteger singlePool = new AtomicInteger();
+        AtomicInteger parallelPool = new AtomicInteger();
+        Spreadsheet single = build(1, singlePool);
+        Spreadsheet parallel = build(4, parallelPool);
+        assertSameCells(single, parallel);
+
+        // Every formula reads A1, so each of these changes recalculates 3 * ROWS formulas
+        for (String command : new String[]{"A1 = 3", "A1 = -7.25", "A700 = 1e6", "B2 = 4", "A1 = 0"})
+        {
+            parallelPool.set(0);
+            single.processCommand(command);
+            parallel.processCommand(command);
+            assertSameCells(single, parallel);
+            if (command.startsWith("A1 "))
+            {
+                assertEquals(ROWS, parallelPool.get());
+            }
+        }
+        assertEquals(0, singlePool.get());
+        assertEquals(4, parallel.getRecalculationThreads());
+    }
+}
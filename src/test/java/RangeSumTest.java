@@ -0,0 +1,90 @@
+/*
+ * Tests for sums over ranges long enough to use the range index: results stay exact when much larger values
+ * are in the same column outside the range, and don't drift as values keep changing
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+
+import java.util.Random;
+
+import org.junit.Test;
+import textExcel.*;
+
+import static org.junit.Assert.*;
+
+public class RangeSumTest
+{
+    private static double value(Spreadsheet sheet, String name)
+    {
+        return ((RealCell) sheet.getCell(new SpreadsheetLocation(name))).getDoubleValue();
+    }
+
+    @Test
+    public void testLargeValueBeforeRange()
+    {
+        Spreadsheet sheet = new Spreadsheet(200, 3);
+        sheet.setOutputMode(OutputMode.ACK);
+        for (int row = 2; row <= 100; row++)
+        {
+            sheet.processCommand("A" + row + " = 1");
+        }
+        sheet.processCommand("B1 = ( SUM A2-A100 )");
+        assertEquals(99.0, value(sheet, "B1"), 0.0);
+        sheet.processCommand("A1 = 1e17");
+        sheet.processCommand("A50 = 2");
+        assertEquals(100.0, value(sheet, "B1"), 0.0);
+        sheet.processCommand("C1 = ( AVG A2-A100 )");
+        assertEquals(100.0 / 99, value(sheet, "C1"), 0.0);
+        // Large value inside the range and taken back out again
+        sheet.processCommand("A70 = -1e17");
+        assertEquals(-1e17 + 98, value(sheet, "B1"), 0.0);
+        sheet.processCommand("A70 = 1");
+        assertEquals(100.0, value(sheet, "B1"), 0.0);
+    }
+
+    @Test
+    public void testNoDriftAfterManyChanges()
+    {
+        int rows = 3 * RangeSumIndex.MIN_INDEXED_ROWS;
+        Spreadsheet sheet = new Spreadsheet(rows + 1, 2);
+        sheet.setOutputMode(OutputMode.ACK);
+        long[] values = new long[rows];
+        for (int row = 0; row < rows; row++)
+        {
+            values[row] = row;
+            sheet.processCommand("A" + (row + 1) + " = " + row);
+        }
+        int start = RangeSumIndex.MIN_INDEXED_ROWS;
+        int end = rows - 2;
+        sheet.processCommand("B1 = ( SUM A" + (start + 1) + "-A" + (end + 1) + " )");
+        Random random = new Random(6);
+        for (int change = 0; change < 2000; change++)
+        {
+            int row = random.nextInt(rows);
+            // Mostly small values, with huge ones now and then on either side of the range and in it
+            values[row] = random.nextInt(4) == 0 ? (random.nextInt(2000) - 1000) * 100000000000000L
+                    : random.nextInt(1000) - 500;
+            sheet.processCommand("A" + (row + 1) + " = " + values[row]);
+            if (change % 50 == 49)
+            {
+                // Put small values back so the expected sum is small enough to show any lost precision
+                for (int clear = 0; clear < rows; clear++)
+                {
+                    if (Math.abs(values[clear]) > 1000)
+                    {
+                        values[clear] = clear % 7;
+                        sheet.processCommand("A" + (clear + 1) + " = " + values[clear]);
+                    }
+                }
+            }
+            long expected = 0;
+            for (int i = start; i <= end; i++)
+            {
+                expected += values[i];
+            }
+            // Within rounding of the exact sum, which is far less than 1 whenever only small values are left
+            assertEquals((double) expected, value(sheet, "B1"), Math.ulp((double) expected));
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Tests for save and load of binary snapshots: every kind of cell comes back the same, with or without deflate
+ * and in either storage engine, and files that can't be loaded leave a clear error
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import textExcel.*;
+
+import static org.junit.Assert.*;
+
+public class SnapshotTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String[] COMMANDS = {
+        "A1 = 5", "A2 = 5.0", "A3 = -0.25", "A4 = 1e3", "B1 = 12.5%", "B2 = \"text, with \u00e9\"", "B3 = \"\"",
+        "C1 = ( A1 + A2 * 2 )", "C2 = ( sum A1-A4 )", "C3 = ( A1 / 0 )", "C4 = ( C5 )", "C5 = ( C4 )",
+        "D1 = ( B2 )", "L20 = ( avg A1-A4 )"
+    };
+
+    private static Spreadsheet fill(Spreadsheet sheet)
+    {
+        for (String command : COMMANDS)
+        {
+            sheet.processCommand(command);
+        }
+        return sheet;
+    }
+
+    // Asserts every cell of actual shows and holds the same as in expected
+    private static void assertSameCells(Spreadsheet expected, Spreadsheet actual)
+    {
+        assertEquals(expected.getGridText(), actual.getGridText());
+        for (int row = 0; row < expected.getRows(); row++)
+        {
+            for (int col = 0; col < expected.getCols(); col++)
+            {
+                assertEquals(expected.getCell(row, col).fullCellText(), actual.getCell(row, col).fullCellText());
+            }
+        }
+    }
+
+    @Test
+    public void testSaveAndLoad()
+    {
+        for (boolean deflate : new boolean[]{false, true})
+        {
+            Path file = folder.getRoot().toPath().resolve("sheet" + deflate + ".txs");
+            Spreadsheet sheet = fill(new Spreadsheet());
+            assertEquals("Saved 14 cells to " + file, sheet.processCommand("save " + file + (deflate ? " deflate" : "")));
+
+            Spreadsheet loaded = new Spreadsheet();
+            loaded.processCommand("K1 = 1");
+            assertEquals("Loaded " + file, loaded.processCommand("load " + file));
+            assertSameCells(sheet, loaded);
+            // Loaded formulas still recalculate when a cell they read changes
+            sheet.processCommand("A1 = 7");
+            loaded.processCommand("A1 = 7");
+            assertSameCells(sheet, loaded);
+        }
+    }
+
+    @Test
+    public void testLoadIntoColumnarStorage()
+    {
+        Path file = folder.getRoot().toPath().resolve("sheet.txs");
+        Spreadsheet sheet = fill(new Spreadsheet());
+        sheet.processCommand("save " + file);
+        Spreadsheet loaded = new Spreadsheet(new ColumnarCellStorage(20, 12));
+        loaded.processCommand("load " + file);
+        assertSameCells(sheet, loaded);
+    }
+
+    @Test
+    public void testLoadErrors() throws IOException
+    {
+        Path file = folder.getRoot().toPath().resolve("sheet.txs");
+        Spreadsheet sheet = fill(new Spreadsheet());
+        sheet.processCommand("save " + file);
+
+        // Different size: nothing is changed
+        Spreadsheet larger = new Spreadsheet(30, 12);
+        larger.processCommand("A1 = 3");
+        assertTrue(larger.processCommand("load " + file).startsWith("ERROR: Could not load"));
+        assertEquals("3", larger.getCell(0, 0).fullCellText());
+
+        assertTrue(sheet.processCommand("load " + file + ".missing").startsWith("ERROR: Could not load"));
+
+        try (RandomAccessFile truncated = new RandomAccessFile(file.toFile(), "rw"))
+        {
+            truncated.setLength(truncated.length() - 5);
+        }
+        assertTrue(new Spreadsheet().processCommand("load " + file).startsWith("ERROR: Could not load"));
+    }
+
+    @Test
+    public void testFailedSaveKeepsOldFile() throws IOException
+    {
+        Path file = folder.getRoot().toPath().resolve("sheet.txs");
+        Spreadsheet sheet = fill(new Spreadsheet());
+        sheet.processCommand("save " + file);
+        byte[] saved = Files.readAllBytes(file);
+
+        // Cell that can't be written, after others that already were
+        Spreadsheet changed = fill(new Spreadsheet());
+        changed.processCommand("A1 = 9");
+        changed.setCell(new Cell()
+        {
+            public String abbreviatedCellText()
+            {
+                return "other     ";
+            }
+
+            public String fullCellText()
+            {
+                return "other";
+            }
+        }, new SpreadsheetLocation("L20"));
+        for (String options : new String[]{"", " deflate"})
+        {
+            assertTrue(changed.processCommand("save " + file + options).startsWith("ERROR: Could not save"));
+            assertArrayEquals(saved, Files.readAllBytes(file));
+            assertFalse(Files.exists(folder.getRoot().toPath().resolve("sheet.txs.tmp")));
+        }
+        Spreadsheet loaded = new Spreadsheet();
+        assertEquals("Loaded " + file, loaded.processCommand("load " + file));
+        assertSameCells(sheet, loaded);
+    }
+
+    // Writes a copy of saved with bytes at offset replaced
+    private Path corrupt(Path saved, String name, int offset, byte[] bytes) throws IOException
+    {
+        byte[] data = Files.readAllBytes(saved);
+        System.arraycopy(bytes, 0, data, offset, bytes.length);
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, data);
+        return file;
+    }
+
+    @Test
+    public void testCorruptBodyLeavesSheetUnchanged() throws IOException
+    {
+        Path file = folder.getRoot().toPath().resolve("sheet.txs");
+        fill(new Spreadsheet()).processCommand("save " + file);
+        byte[] data = Files.readAllBytes(file);
+        // Header is 32 bytes. Column A's section starts with its index and cell count, then 4 rows,
+        // so its tags are at 56: A4's tag is made unknown, after A1 to A3 were read
+        Path badTag = corrupt(file, "tag.txs", 59, new byte[]{99});
+        // Last formula, in the string table at the end of the file, no longer compiles
+        Path badFormula = corrupt(file, "formula.txs", data.length - 6, "?".getBytes(StandardCharsets.UTF_8));
+        // Column A's cell count is more than the rows it has
+        Path badCount = corrupt(file, "count.txs", 36, new byte[]{21});
+
+        for (Path bad : new Path[]{badTag, badFormula, badCount})
+        {
+            Spreadsheet sheet = new Spreadsheet();
+            sheet.processCommand("A1 = 3");
+            sheet.processCommand("K5 = ( A1 * 2 )");
+            Spreadsheet expected = new Spreadsheet();
+            expected.processCommand("A1 = 3");
+            expected.processCommand("K5 = ( A1 * 2 )");
+            String response = sheet.processCommand("load " + bad);
+            assertTrue(response, response.startsWith("ERROR: Could not load"));
+            assertSameCells(expected, sheet);
+            // Formulas still recalculate
+            sheet.processCommand("A1 = 4");
+            assertEquals("8.0       ", sheet.getCell(4, 10).abbreviatedCellText());
+        }
+    }
+
+    @Test
+    public void testFailedLoadIsNotJournaled() throws IOException
+    {
+        Path file = folder.getRoot().toPath().resolve("sheet.txs");
+        fill(new Spreadsheet()).processCommand("save " + file);
+        Path bad = corrupt(file, "tag.txs", 59, new byte[]{99});
+        Path journal = folder.getRoot().toPath().resolve("sheet.journal");
+
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.openJournal(journal, 1, 1000);
+        sheet.processCommand("A1 = 3");
+        assertTrue(sheet.processCommand("load " + bad).startsWith("ERROR: Could not load"));
+        sheet.processCommand("A2 = 5");
+        sheet.closeJournal();
+
+        Spreadsheet restored = new Spreadsheet();
+        assertEquals(2, restored.openJournal(journal, 1, 1000));
+        restored.closeJournal();
+        assertSameCells(sheet, restored);
+    }
+}
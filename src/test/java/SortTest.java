@@ -0,0 +1,282 @@
+/*
+ * Tests for sorta and sortd: stable order of equal cells, formulas with errors, and sorting large ranges
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+import textExcel.*;
+
+import static org.junit.Assert.*;
+
+public class SortTest
+{
+    private Spreadsheet grid;
+
+    @Before
+    public void initializeGrid()
+    {
+        grid = new Spreadsheet();
+    }
+
+    private String getText(String name)
+    {
+        return grid.getCell(new SpreadsheetLocation(name)).fullCellText();
+    }
+
+    @Test
+    public void testEqualCellsKeepOrder()
+    {
+        // 1, 100% and 1.0 are all equal, so they stay in the order they were in for both directions
+        grid.processCommand("A1 = 1");
+        grid.processCommand("A2 = \"b\"");
+        grid.processCommand("A3 = 100%");
+        grid.processCommand("A4 = 1.0");
+        grid.processCommand("sorta A1-A5");
+        assertEquals("", getText("A1"));
+        assertEquals("\"b\"", getText("A2"));
+        assertEquals("1", getText("A3"));
+        assertEquals("1.0", getText("A4"));
+        assertEquals("1.0", getText("A5"));
+        grid.processCommand("sortd A1-A5");
+        assertEquals("1", getText("A1"));
+        assertEquals("1.0", getText("A2"));
+        assertEquals("1.0", getText("A3"));
+        assertEquals("\"b\"", getText("A4"));
+        assertEquals("", getText("A5"));
+    }
+
+    @Test
+    public void testErrorsSortAfterNumbers()
+    {
+        grid.processCommand("A1 = ( 1 / 0 )");
+        grid.processCommand("A2 = 3");
+        grid.processCommand("A3 = \"a\"");
+        grid.processCommand("sorta A1-A3");
+        assertEquals("\"a\"", getText("A1"));
+        assertEquals("3", getText("A2"));
+        assertEquals("( 1 / 0 )", getText("A3"));
+        grid.processCommand("sortd A1-A3");
+        assertEquals("( 1 / 0 )", getText("A1"));
+        assertEquals("\"a\"", getText("A3"));
+    }
+
+    @Test
+    public void testFormulasSortByValueBeforeSort()
+    {
+        // A2 reads A3, so its value changes once A3 moves: it's sorted by the value it had before the sort
+        grid.processCommand("B1 = 10");
+        grid.processCommand("A1 = ( B1 / 2 )");
+        grid.processCommand("A2 = ( A3 + 1 )");
+        grid.processCommand("A3 = 3");
+        grid.processCommand("sorta A1-A3");
+        assertEquals("3", getText("A1"));
+        assertEquals("( A3 + 1 )", getText("A2"));
+        assertEquals("( B1 / 2 )", getText("A3"));
+        // After the sort, A3 holds 5 so A2 is 6
+        assertEquals("6.0       ", grid.getCell(new SpreadsheetLocation("A2")).abbreviatedCellText());
+    }
+
+    @Test(timeout = 10000)
+    public void testSortFiftyThousandCells()
+    {
+        grid = new Spreadsheet(5000, 10);
+        grid.setOutputMode(OutputMode.ACK);
+        java.util.Random random = new java.util.Random(17);
+        for (int row = 1; row <= 5000; row++)
+        {
+            for (char col = 'A'; col <= 'J'; col++)
+            {
+                grid.processCommand(col + "" + row + " = " + random.nextInt(100000));
+            }
+        }
+        grid.processCommand("sorta A1-J5000");
+        double previous = Double.NEGATIVE_INFINITY;
+        for (int row = 1; row <= 5000; row++)
+        {
+            for (char col = 'A'; col <= 'J'; col++)
+            {
+                double value = Double.parseDouble(getText(col + "" + row));
+                assertTrue("sorted at " + col + row, value >= previous);
+                previous = value;
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testParallelSortKeepsOrderRules()
+    {
+        // Long enough to be sorted across cores, with many equal cells of every kind
+        java.util.Random random = new java.util.Random(18);
+        Cell[] cells = new Cell[CellSorter.PARALLEL_THRESHOLD + 1000];
+        for (int i = 0; i < cells.length; i++)
+        {
+            int kind = random.nextInt(4);
+            if (kind == 0)
+            {
+                cells[i] = EmptyCell.EMPTY;
+            }
+            else if (kind == 1)
+            {
+                cells[i] = new TextCell("\"" + (char) ('a' + random.nextInt(3)) + "\"");
+            }
+            else
+            {
+                cells[i] = new ValueCell("" + random.nextInt(50));
+            }
+        }
+        for (boolean ascending : new boolean[]{true, false})
+        {
+            int[] order = new CellSorter(cells).sort(ascending);
+            for (int i = 1; i < order.length; i++)
+            {
+                Cell previous = cells[order[i - 1]];
+                Cell cell = cells[order[i]];
+                // compareCells puts the first of 2 empty cells first, which is the same as them being equal
+                int comparison = previous == cell ? 0 : Spreadsheet.compareCells(previous, cell);
+                if (!ascending)
+                {
+                    comparison = -comparison;
+                }
+                assertTrue("in order at " + i, comparison <= 0);
+                if (comparison == 0)
+                {
+                    assertTrue("equal cells keep their order at " + i, order[i - 1] < order[i]);
+                }
+            }
+        }
+    }
+
+    // Fills A1-C5 with a table: a name, a group and a number, and a formula reading the numbers in D1
+    private void buildTable()
+    {
+        String[][] rows = {{"\"e\"", "2", "5"}, {"\"b\"", "1", "7.50"}, {"\"c\"", "2", "1"}, {"\"a\"", "1", "3%"}, {"\"d\"", "", "4"}};
+        for (int row = 0; row < rows.length; row++)
+        {
+            for (int col = 0; col < 3; col++)
+            {
+                if (!rows[row][col].equals(""))
+                {
+                    grid.processCommand((char) ('A' + col) + "" + (row + 1) + " = " + rows[row][col]);
+                }
+            }
+        }
+        grid.processCommand("D1 = ( C1 + C2 )");
+    }
+
+    private void assertTableSorted()
+    {
+        // Group ascending with empty first, then number descending within a group. Rows keep their cells together
+        String[] names = {"\"d\"", "\"b\"", "\"a\"", "\"e\"", "\"c\""};
+        String[] numbers = {"4", "7.50", "0.03", "5", "1"};
+        for (int row = 0; row < names.length; row++)
+        {
+            assertEquals("name in row " + (row + 1), names[row], getText("A" + (row + 1)));
+            assertEquals("number in row " + (row + 1), numbers[row], getText("C" + (row + 1)));
+        }
+        assertEquals("", getText("B1"));
+        // Formula reading C1 and C2 sees the moved numbers
+        assertEquals("11.5      ", grid.getCell(new SpreadsheetLocation("D1")).abbreviatedCellText());
+    }
+
+    @Test
+    public void testSortRowsByMultipleColumns()
+    {
+        buildTable();
+        String output = grid.processCommand("sort rows A1-C5 by B, C desc");
+        assertEquals(grid.getGridText(), output);
+        assertTableSorted();
+    }
+
+    @Test
+    public void testSortRowsInColumnarStorage()
+    {
+        grid = new Spreadsheet(new ColumnarCellStorage(20, 12));
+        buildTable();
+        grid.processCommand("sort rows a1-c5 by b asc, c DESC");
+        assertTableSorted();
+    }
+
+    @Test
+    public void testSortRowsErrors()
+    {
+        buildTable();
+        String invalidRange = grid.processCommand("sort rows A1 by B");
+        assertTrue(invalidRange, invalidRange.startsWith("ERROR"));
+        String outsideRange = grid.processCommand("sort rows A1-B5 by C");
+        assertTrue(outsideRange, outsideRange.startsWith("ERROR"));
+        String direction = grid.processCommand("sort rows A1-C5 by C up");
+        assertTrue(direction, direction.startsWith("ERROR"));
+        assertEquals("\"e\"", getText("A1"));
+    }
+
+    @Test
+    public void testExternalSortMatchesInMemorySort()
+    {
+        // A budget of a few hundred bytes sorts in runs of a few cells, spilled to temporary files and merged
+        Spreadsheet external = new Spreadsheet();
+        external.setSortMemoryBudget(200);
+        java.util.Random random = new java.util.Random(20);
+        for (int i = 0; i < 150; i++)
+        {
+            String cell = (char) ('A' + random.nextInt(8)) + "" + (1 + random.nextInt(20));
+            int kind = random.nextInt(4);
+            String value = kind == 0 ? "\"" + (char) ('a' + random.nextInt(5)) + "\"" : kind == 1 ? random.nextInt(5) + "%" : "" + random.nextInt(10);
+            grid.processCommand(cell + " = " + value);
+            external.processCommand(cell + " = " + value);
+        }
+        String[] commands = {"sortd A1-H20", "sort rows A1-H20 by C, B desc", "sorta B3-G17"};
+        for (String command : commands)
+        {
+            assertEquals(command, grid.processCommand(command), external.processCommand(command));
+        }
+    }
+
+    @Test
+    public void testExternalSortMergesInPasses()
+    {
+        // Runs of 5 cells or 2 rows, so there are more runs than are merged at once
+        Spreadsheet inMemory = new Spreadsheet(200, 3);
+        Spreadsheet external = new Spreadsheet(200, 3);
+        inMemory.setOutputMode(OutputMode.ACK);
+        external.setOutputMode(OutputMode.ACK);
+        external.setSortMemoryBudget(200);
+        java.util.Random random = new java.util.Random(64);
+        for (int row = 1; row <= 200; row++)
+        {
+            for (char col = 'A'; col <= 'C'; col++)
+            {
+                String value = random.nextInt(3) == 0 ? "\"" + (char) ('a' + random.nextInt(5)) + "\"" : "" + random.nextInt(50);
+                inMemory.processCommand(col + "" + row + " = " + value);
+                external.processCommand(col + "" + row + " = " + value);
+            }
+        }
+        assertTrue(200 * 3 / ExternalCellSorter.getRunLength(200, 1) > ExternalCellSorter.MAX_FAN_IN);
+        assertTrue(200 / ExternalCellSorter.getRunLength(200, 2) > ExternalCellSorter.MAX_FAN_IN);
+        for (String command : new String[]{"sorta A1-C200", "sort rows A1-C200 by B desc, C", "sortd A1-C200"})
+        {
+            assertEquals("OK", inMemory.processCommand(command));
+            assertEquals("OK", external.processCommand(command));
+            assertEquals(command, inMemory.getGridText(), external.getGridText());
+        }
+    }
+
+    @Test
+    public void testInvalidRangeLeavesCellsAlone()
+    {
+        grid.processCommand("C3 = 1");
+        grid.processCommand("C4 = 2");
+        grid.processCommand("C5 = 3");
+        String before = grid.getGridText();
+        // Corners the wrong way round, and ranges past the edge of the spreadsheet
+        for (String command : new String[]{"sorta C5-A1", "sortd C5-A1", "sorta C5-C3", "sorta A1-M1", "sortd A1-A21"})
+        {
+            assertEquals(command, "ERROR: Invalid range. 'help sort' for more info.", grid.processCommand(command));
+            assertEquals(command, before, grid.getGridText());
+        }
+        assertEquals("1", getText("C3"));
+        assertEquals("3", getText("C5"));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Tests for printing a range of cells and for the viewport displayed after commands
+ *
+ * @author Alec Machlis
+ * @version October 18, 2026
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+import textExcel.*;
+
+import static org.junit.Assert.*;
+
+public class ViewportTest
+{
+    private Spreadsheet grid;
+
+    @Before
+    public void initializeGrid()
+    {
+        grid = new Spreadsheet();
+    }
+
+    @Test
+    public void testPrintRange()
+    {
+        grid.processCommand("B2 = 5");
+        grid.processCommand("C3 = ( B2 * 2 )");
+        String expected = "   |B         |C         |\n"
+                + "2  |5.0       |          |\n"
+                + "3  |          |10.0      |\n";
+        assertEquals(expected, grid.processCommand("print B2-C3"));
+        // Full grid is still printed without a range
+        assertEquals(grid.getGridText(), grid.processCommand("print"));
+    }
+
+    @Test
+    public void testViewportIsUsedForEcho()
+    {
+        assertEquals("   |K         |L         |\n"
+                + "19 |          |          |\n"
+                + "20 |          |          |\n", grid.processCommand("viewport K19-L20"));
+        String echo = grid.processCommand("L20 = \"end\"");
+        assertEquals("   |K         |L         |\n"
+                + "19 |          |          |\n"
+                + "20 |          |end       |\n", echo);
+        assertEquals(echo, grid.processCommand("print"));
+        assertEquals(echo, grid.processCommand("clear A1"));
+        // Grid text is always the entire spreadsheet
+        assertEquals(21, grid.getGridText().split("\n").length);
+
+        grid.processCommand("viewport");
+        assertEquals(grid.getGridText(), grid.processCommand("print"));
+    }
+
+    @Test
+    public void testInvalidRanges()
+    {
+        assertTrue(grid.processCommand("print C3-B2").startsWith("ERROR"));
+        assertTrue(grid.processCommand("print A1-M1").startsWith("ERROR"));
+        assertTrue(grid.processCommand("viewport A1").startsWith("ERROR"));
+        // Viewport is unchanged after an error
+        assertEquals(grid.getGridText(), grid.processCommand("print"));
+    }
+
+    @Test
+    public void testRowsShownAfterRangeChanges()
+    {
+        // Taller than the rows kept rendered between prints, so the full grid is rendered again every time
+        Spreadsheet tall = new Spreadsheet(3000, 2);
+        tall.processCommand("viewport A2999-B3000");
+        tall.processCommand("B3000 = 1");
+        assertTrue(tall.getGridText().endsWith("3000|          |1.0       |\n"));
+        assertEquals("    |A         |B         |\n"
+                + "2999|          |          |\n"
+                + "3000|          |2.0       |\n", tall.processCommand("B3000 = 2"));
+        assertTrue(tall.getGridText().endsWith("3000|          |2.0       |\n"));
+        // Same rows under a different range, then the first range again after a change
+        assertEquals("    |B         |\n"
+                + "3000|2.0       |\n", tall.processCommand("print B3000-B3000"));
+        tall.processCommand("A2999 = ( B3000 * 2 )");
+        assertEquals("    |A         |B         |\n"
+                + "2999|4.0       |          |\n"
+                + "3000|          |2.0       |\n", tall.processCommand("print"));
+    }
+}